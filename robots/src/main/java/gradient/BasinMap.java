@@ -0,0 +1,122 @@
+package gradient;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Карта бассейнов притяжения: для каждой стартовой точки сетки с шагом step
+ * хранится номер минимума, в который сошёлся спуск из неё, и число шагов.
+ * Номер NO_MINIMUM означает, что спуск не сошёлся за отведённые шаги
+ * или ушёл в бесконечность.
+ */
+public final class BasinMap {
+
+    public static final int NO_MINIMUM = -1;
+
+    private static final int overlayAlpha = 0x90000000;
+    private static final int noMinimumColor = 0x80000000;
+
+    private final GradientFunction function;
+    private final double learningRate;
+    private final int step;
+    private final int columns;
+    private final int rows;
+    private final int[] basins;
+    private final int[] iterations;
+    private final double[] minimaX;
+    private final double[] minimaY;
+    private final BufferedImage overlay;
+
+    BasinMap(GradientFunction function, double learningRate, int step, int columns, int rows,
+             int[] basins, int[] iterations, double[] minimaX, double[] minimaY) {
+        this.function = function;
+        this.learningRate = learningRate;
+        this.step = step;
+        this.columns = columns;
+        this.rows = rows;
+        this.basins = basins;
+        this.iterations = iterations;
+        this.minimaX = minimaX;
+        this.minimaY = minimaY;
+        overlay = buildOverlay();
+    }
+
+    public GradientFunction getFunction() {
+        return function;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    /**
+     * Расстояние в пикселях между соседними стартовыми точками.
+     */
+    public int getStep() {
+        return step;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getMinimaCount() {
+        return minimaX.length;
+    }
+
+    public double getMinimumX(int minimum) {
+        return minimaX[minimum];
+    }
+
+    public double getMinimumY(int minimum) {
+        return minimaY[minimum];
+    }
+
+    /**
+     * Номер минимума для старта из клетки (column, row) или NO_MINIMUM.
+     */
+    public int basinAt(int column, int row) {
+        return basins[row * columns + column];
+    }
+
+    public int iterationsAt(int column, int row) {
+        return iterations[row * columns + column];
+    }
+
+    /**
+     * Полупрозрачная картинка columns x rows: цвет - бассейн, яркость -
+     * число шагов (чем быстрее сходится, тем светлее). Рисовать с
+     * увеличением в step раз.
+     */
+    public BufferedImage getOverlay() {
+        return overlay;
+    }
+
+    private BufferedImage buildOverlay() {
+        BufferedImage image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int maxIterations = 1;
+        for (int i = 0; i < basins.length; ++i) {
+            if (basins[i] != NO_MINIMUM && iterations[i] > maxIterations) {
+                maxIterations = iterations[i];
+            }
+        }
+        double scale = 1 / Math.log1p(maxIterations);
+        for (int i = 0; i < basins.length; ++i) {
+            int basin = basins[i];
+            if (basin == NO_MINIMUM) {
+                pixels[i] = noMinimumColor;
+                continue;
+            }
+            float hue = (float) ((basin * 0.618033988749895) % 1.0);
+            float brightness = (float) (1 - 0.6 * Math.log1p(iterations[i]) * scale);
+            pixels[i] = (Color.HSBtoRGB(hue, 0.75f, brightness) & 0x00FFFFFF) | overlayAlpha;
+        }
+        return image;
+    }
+}
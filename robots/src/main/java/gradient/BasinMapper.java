@@ -0,0 +1,341 @@
+package gradient;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Строит BasinMap в фоне: запускает градиентный спуск из каждой step-й
+ * точки поля. Строки сетки считаются параллельно на всех ядрах, внутри
+ * строки градиенты берутся пакетным GradientFunction.backward только по
+ * ещё не сошедшимся точкам.
+ *
+ * Новый запрос отменяет текущий. Готовые карты кешируются по функции,
+ * шагу обучения и размерам, так что возврат к прежней функции мгновенный.
+ */
+public class BasinMapper {
+
+    public interface Listener {
+        /**
+         * Карта готова. Вызывается из фонового потока, а при попадании
+         * в кеш - из потока, сделавшего запрос.
+         */
+        public void onBasinMapReady(BasinMap map);
+    }
+
+    public static final int DEFAULT_MAX_ITERATIONS = 2000;
+    private static final int CACHE_SIZE = 8;
+    private static final int CANCEL_CHECK_MASK = 63;
+    private static final double gradientTolerance = 1e-3;
+    private static final double stepTolerance = 1e-4;
+    private static final double mergeRadius = 3;
+    private static final int PENDING = -2;
+    private static final int maxHops = 32;
+
+    private final Listener listener;
+    private final int maxIterations;
+    private final AtomicLong generation = new AtomicLong();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "basin mapper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Key, BasinMap> cache = new LinkedHashMap<Key, BasinMap>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, BasinMap> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public BasinMapper(Listener listener) {
+        this(listener, DEFAULT_MAX_ITERATIONS);
+    }
+
+    public BasinMapper(Listener listener, int maxIterations) {
+        if (maxIterations <= 0) {
+            throw new IllegalArgumentException("maxIterations must be positive: " + maxIterations);
+        }
+        this.listener = listener;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Запрашивает карту для поля width x height со стартами через step
+     * пикселей. Результат придёт в Listener.
+     */
+    public void request(GradientFunction function, double rate, int width, int height, int step) {
+        if (width <= 0 || height <= 0 || step <= 0) {
+            return;
+        }
+        long current = generation.incrementAndGet();
+        Key key = new Key(function, rate, width, height, step);
+        BasinMap cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            listener.onBasinMapReady(cached);
+            return;
+        }
+        executor.execute(() -> {
+            if (generation.get() != current) {
+                return;
+            }
+            BasinMap map = build(function, rate, width, height, step,
+                    () -> generation.get() != current);
+            if (map == null) {
+                return;
+            }
+            synchronized (cache) {
+                cache.put(key, map);
+            }
+            if (generation.get() == current) {
+                listener.onBasinMapReady(map);
+            }
+        });
+    }
+
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Считает карту в текущем потоке (строки - параллельно).
+     * @return null, если cancelled сработал до окончания
+     */
+    public BasinMap build(GradientFunction function, double rate, int width, int height, int step,
+                          BooleanSupplier cancelled) {
+        int columns = (width + step - 1) / step;
+        int rows = (height + step - 1) / step;
+        int[] basins = new int[columns * rows];
+        int[] iterations = new int[columns * rows];
+        double[] endX = new double[columns * rows];
+        double[] endY = new double[columns * rows];
+        IntStream.range(0, rows).parallel().forEach(row -> {
+            if (!cancelled.getAsBoolean()) {
+                descendRow(function, rate, row, columns, step, basins, iterations, endX, endY, cancelled);
+            }
+        });
+        if (cancelled.getAsBoolean()) {
+            return null;
+        }
+        return cluster(function, rate, step, columns, rows, basins, iterations, endX, endY);
+    }
+
+    private void descendRow(GradientFunction function, double rate, int row, int columns, int step,
+                            int[] basins, int[] iterations, double[] endX, double[] endY,
+                            BooleanSupplier cancelled) {
+        double[] x = new double[columns];
+        double[] y = new double[columns];
+        double[] gx = new double[columns];
+        double[] gy = new double[columns];
+        int[] index = new int[columns];
+        double[] anchorX = new double[columns];
+        double[] anchorY = new double[columns];
+        double[] path = new double[columns];
+        int[] still = new int[columns];
+        for (int column = 0; column < columns; ++column) {
+            x[column] = (column + 0.5) * step;
+            y[column] = (row + 0.5) * step;
+            index[column] = column;
+            anchorX[column] = x[column];
+            anchorY[column] = y[column];
+        }
+        int base = row * columns;
+        double gradientTolerance2 = gradientTolerance * gradientTolerance;
+        double stepTolerance2 = stepTolerance * stepTolerance;
+        double stagnationRadius2 = StagnationDetector.DEFAULT_RADIUS * StagnationDetector.DEFAULT_RADIUS;
+        int active = columns;
+        for (int iteration = 1; iteration <= maxIterations && active > 0; ++iteration) {
+            if ((iteration & CANCEL_CHECK_MASK) == 0 && cancelled.getAsBoolean()) {
+                return;
+            }
+            function.backward(x, y, gx, gy, 0, active);
+            int kept = 0;
+            for (int i = 0; i < active; ++i) {
+                double dx = gx[i] * rate;
+                double dy = gy[i] * rate;
+                double nx = x[i] - dx;
+                double ny = y[i] - dy;
+                int cell = base + index[i];
+                if (Double.isNaN(nx + ny) || Double.isInfinite(nx + ny)) {
+                    basins[cell] = BasinMap.NO_MINIMUM;
+                    iterations[cell] = iteration;
+                    continue;
+                }
+                if (gx[i] * gx[i] + gy[i] * gy[i] < gradientTolerance2
+                        || dx * dx + dy * dy < stepTolerance2) {
+                    // остановились на первом же шаге - старт на плато, минимума нет
+                    basins[cell] = iteration == 1 ? BasinMap.NO_MINIMUM : 0;
+                    iterations[cell] = iteration;
+                    endX[cell] = nx;
+                    endY[cell] = ny;
+                    continue;
+                }
+                // колебание вокруг излома (как у Circle2) - тоже сходимость,
+                // см. StagnationDetector
+                double driftX = nx - anchorX[i];
+                double driftY = ny - anchorY[i];
+                int stillSteps = still[i] + 1;
+                double travelled = path[i] + Math.sqrt(dx * dx + dy * dy);
+                if (driftX * driftX + driftY * driftY > stagnationRadius2) {
+                    anchorX[i] = nx;
+                    anchorY[i] = ny;
+                    stillSteps = 0;
+                    travelled = 0;
+                } else if (stillSteps >= StagnationDetector.DEFAULT_WINDOW
+                        && travelled >= 2 * StagnationDetector.DEFAULT_RADIUS) {
+                    basins[cell] = 0;
+                    iterations[cell] = iteration;
+                    endX[cell] = nx;
+                    endY[cell] = ny;
+                    continue;
+                }
+                x[kept] = nx;
+                y[kept] = ny;
+                index[kept] = index[i];
+                anchorX[kept] = anchorX[i];
+                anchorY[kept] = anchorY[i];
+                path[kept] = travelled;
+                still[kept] = stillSteps;
+                ++kept;
+            }
+            active = kept;
+        }
+        // не успевшие сойтись доопределяются в cluster() по клетке,
+        // в которую они успели прийти
+        for (int i = 0; i < active; ++i) {
+            int cell = base + index[i];
+            basins[cell] = PENDING;
+            iterations[cell] = maxIterations;
+            endX[cell] = x[i];
+            endY[cell] = y[i];
+        }
+    }
+
+    /**
+     * Склеивает конечные точки ближе mergeRadius в один минимум и
+     * проставляет номера минимумов вместо временных меток.
+     */
+    private static BasinMap cluster(GradientFunction function, double rate, int step, int columns, int rows,
+                                    int[] basins, int[] iterations, double[] endX, double[] endY) {
+        Map<Long, Integer> buckets = new HashMap<>();
+        double[] minimaX = new double[16];
+        double[] minimaY = new double[16];
+        int minima = 0;
+        for (int cell = 0; cell < basins.length; ++cell) {
+            if (basins[cell] == BasinMap.NO_MINIMUM || basins[cell] == PENDING) {
+                continue;
+            }
+            double x = endX[cell];
+            double y = endY[cell];
+            long bucketX = (long) Math.floor(x / mergeRadius);
+            long bucketY = (long) Math.floor(y / mergeRadius);
+            int found = BasinMap.NO_MINIMUM;
+            for (long by = bucketY - 1; by <= bucketY + 1 && found == BasinMap.NO_MINIMUM; ++by) {
+                for (long bx = bucketX - 1; bx <= bucketX + 1; ++bx) {
+                    Integer candidate = buckets.get(bucketKey(bx, by));
+                    if (candidate != null && Math.hypot(minimaX[candidate] - x, minimaY[candidate] - y) <= mergeRadius) {
+                        found = candidate;
+                        break;
+                    }
+                }
+            }
+            if (found == BasinMap.NO_MINIMUM) {
+                if (minima == minimaX.length) {
+                    minimaX = Arrays.copyOf(minimaX, minima * 2);
+                    minimaY = Arrays.copyOf(minimaY, minima * 2);
+                }
+                found = minima++;
+                minimaX[found] = x;
+                minimaY[found] = y;
+                buckets.putIfAbsent(bucketKey(bucketX, bucketY), found);
+            }
+            basins[cell] = found;
+        }
+        for (int cell = 0; cell < basins.length; ++cell) {
+            if (basins[cell] == PENDING) {
+                basins[cell] = follow(cell, step, columns, rows, basins, endX, endY);
+            }
+        }
+        return new BasinMap(function, rate, step, columns, rows, basins, iterations,
+                Arrays.copyOf(minimaX, minima), Arrays.copyOf(minimaY, minima));
+    }
+
+    /**
+     * Старт, не сошедшийся за maxIterations, относится к тому же бассейну,
+     * что и клетка, до которой он дошёл: спуск из неё продолжает тот же
+     * путь. Если и она не сошлась, идём по цепочке дальше.
+     */
+    private static int follow(int cell, int step, int columns, int rows,
+                              int[] basins, double[] endX, double[] endY) {
+        int current = cell;
+        for (int hop = 0; hop < maxHops; ++hop) {
+            int column = (int) Math.floor(endX[current] / step);
+            int row = (int) Math.floor(endY[current] / step);
+            if (column < 0 || row < 0 || column >= columns || row >= rows) {
+                return BasinMap.NO_MINIMUM;
+            }
+            int next = row * columns + column;
+            if (next == current) {
+                return BasinMap.NO_MINIMUM;
+            }
+            if (basins[next] != PENDING) {
+                return basins[next];
+            }
+            current = next;
+        }
+        return BasinMap.NO_MINIMUM;
+    }
+
+    private static long bucketKey(long x, long y) {
+        return (x << 32) ^ (y & 0xFFFFFFFFL);
+    }
+
+    private static final class Key {
+        private final GradientFunction function;
+        private final double rate;
+        private final int width;
+        private final int height;
+        private final int step;
+
+        Key(GradientFunction function, double rate, int width, int height, int step) {
+            this.function = function;
+            this.rate = rate;
+            this.width = width;
+            this.height = height;
+            this.step = step;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return function.equals(other.function) && Double.compare(rate, other.rate) == 0
+                    && width == other.width && height == other.height && step == other.step;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = function.hashCode();
+            result = 31 * result + Double.hashCode(rate);
+            result = 31 * result + width;
+            result = 31 * result + height;
+            return 31 * result + step;
+        }
+    }
+}
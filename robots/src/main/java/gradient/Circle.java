@@ -32,4 +32,36 @@ public class Circle implements GradientFunction {
         double dist = distToCenter(x, y);
         return new Point2D.Double(diffX / dist, diffY / dist);
     }
+
+    @Override
+    public void forward(double[] xs, double[] ys, double[] values, int offset, int count) {
+        for (int i = offset; i < offset + count; ++i) {
+            double diffX = centerX - xs[i];
+            double diffY = centerY - ys[i];
+            values[i] = Math.sqrt(diffX * diffX + diffY * diffY);
+        }
+    }
+
+    @Override
+    public void forwardRow(double startX, double stepX, double y,
+                           double[] values, int offset, int count) {
+        double diffY = centerY - y;
+        double diffY2 = diffY * diffY;
+        for (int k = 0; k < count; ++k) {
+            double diffX = centerX - (startX + k * stepX);
+            values[offset + k] = Math.sqrt(diffX * diffX + diffY2);
+        }
+    }
+
+    @Override
+    public void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                         int offset, int count) {
+        for (int i = offset; i < offset + count; ++i) {
+            double diffX = xs[i] - centerX;
+            double diffY = ys[i] - centerY;
+            double dist = Math.sqrt(diffX * diffX + diffY * diffY);
+            gradX[i] = diffX / dist;
+            gradY[i] = diffY / dist;
+        }
+    }
 }
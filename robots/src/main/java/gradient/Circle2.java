@@ -44,4 +44,47 @@ public class Circle2 implements GradientFunction {
         return new Point2D.Double(diffX1 * multA / dist1 + diffX2 * multB / dist2,
                 diffY1 * multA / dist1 + diffY2 * multB / dist2);
     }
+
+    @Override
+    public void forward(double[] xs, double[] ys, double[] values, int offset, int count) {
+        for (int i = offset; i < offset + count; ++i) {
+            double diffX1 = centerX1 - xs[i];
+            double diffY1 = centerY1 - ys[i];
+            double diffX2 = centerX2 - xs[i];
+            double diffY2 = centerY2 - ys[i];
+            values[i] = Math.sqrt(diffX1 * diffX1 + diffY1 * diffY1) * multA
+                    + Math.sqrt(diffX2 * diffX2 + diffY2 * diffY2) * multB;
+        }
+    }
+
+    @Override
+    public void forwardRow(double startX, double stepX, double y,
+                           double[] values, int offset, int count) {
+        double diffY1 = centerY1 - y;
+        double diffY2 = centerY2 - y;
+        double diffY1Sq = diffY1 * diffY1;
+        double diffY2Sq = diffY2 * diffY2;
+        for (int k = 0; k < count; ++k) {
+            double x = startX + k * stepX;
+            double diffX1 = centerX1 - x;
+            double diffX2 = centerX2 - x;
+            values[offset + k] = Math.sqrt(diffX1 * diffX1 + diffY1Sq) * multA
+                    + Math.sqrt(diffX2 * diffX2 + diffY2Sq) * multB;
+        }
+    }
+
+    @Override
+    public void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                         int offset, int count) {
+        for (int i = offset; i < offset + count; ++i) {
+            double diffX1 = xs[i] - centerX1;
+            double diffY1 = ys[i] - centerY1;
+            double diffX2 = xs[i] - centerX2;
+            double diffY2 = ys[i] - centerY2;
+            double weight1 = multA / Math.sqrt(diffX1 * diffX1 + diffY1 * diffY1);
+            double weight2 = multB / Math.sqrt(diffX2 * diffX2 + diffY2 * diffY2);
+            gradX[i] = diffX1 * weight1 + diffX2 * weight2;
+            gradY[i] = diffY1 * weight1 + diffY2 * weight2;
+        }
+    }
 }
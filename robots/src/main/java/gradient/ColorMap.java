@@ -0,0 +1,8 @@
+package gradient;
+
+/**
+ * Отображение нормированного значения t из [0, 1] в цвет ARGB.
+ */
+public interface ColorMap {
+    public int toARGB(double t);
+}
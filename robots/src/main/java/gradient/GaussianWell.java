@@ -0,0 +1,60 @@
+package gradient;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Гауссова яма глубины depth: -depth * exp(-r^2 / (2 * sigma^2)).
+ */
+public class GaussianWell implements GradientFunction {
+
+    private final double centerX;
+    private final double centerY;
+    private final double depth;
+    private final double invTwoSigma2;
+
+    public GaussianWell(double x, double y, double sigma, double depth) {
+        centerX = x;
+        centerY = y;
+        this.depth = depth;
+        invTwoSigma2 = 1 / (2 * sigma * sigma);
+    }
+
+    @Override
+    public double forward(double x, double y) {
+        double diffX = x - centerX;
+        double diffY = y - centerY;
+        return -depth * Math.exp(-(diffX * diffX + diffY * diffY) * invTwoSigma2);
+    }
+
+    @Override
+    public Point2D.Double backward(double x, double y) {
+        double diffX = x - centerX;
+        double diffY = y - centerY;
+        double value = -depth * Math.exp(-(diffX * diffX + diffY * diffY) * invTwoSigma2);
+        double factor = -2 * invTwoSigma2 * value;
+        return new Point2D.Double(factor * diffX, factor * diffY);
+    }
+
+    @Override
+    public void forwardRow(double startX, double stepX, double y,
+                           double[] values, int offset, int count) {
+        double diffY = y - centerY;
+        double termY = diffY * diffY;
+        for (int k = 0; k < count; ++k) {
+            double diffX = startX + k * stepX - centerX;
+            values[offset + k] = -depth * Math.exp(-(diffX * diffX + termY) * invTwoSigma2);
+        }
+    }
+
+    @Override
+    public void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                         int offset, int count) {
+        for (int i = offset; i < offset + count; ++i) {
+            double diffX = xs[i] - centerX;
+            double diffY = ys[i] - centerY;
+            double factor = 2 * invTwoSigma2 * depth * Math.exp(-(diffX * diffX + diffY * diffY) * invTwoSigma2);
+            gradX[i] = factor * diffX;
+            gradY[i] = factor * diffY;
+        }
+    }
+}
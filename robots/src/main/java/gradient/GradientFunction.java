@@ -6,4 +6,35 @@ import java.awt.geom.Point2D;
 public interface GradientFunction {
     public double forward(double x, double y);
     public Point2D.Double backward(double x, double y);
+
+    /**
+     * values[offset + k] = forward(xs[offset + k], ys[offset + k]) для k из [0, count).
+     */
+    public default void forward(double[] xs, double[] ys, double[] values, int offset, int count) {
+        for (int i = offset; i < offset + count; ++i) {
+            values[i] = forward(xs[i], ys[i]);
+        }
+    }
+
+    /**
+     * Значения вдоль строки: values[offset + k] = forward(startX + k * stepX, y).
+     */
+    public default void forwardRow(double startX, double stepX, double y,
+                                   double[] values, int offset, int count) {
+        for (int k = 0; k < count; ++k) {
+            values[offset + k] = forward(startX + k * stepX, y);
+        }
+    }
+
+    /**
+     * Градиенты в точках без создания Point2D: результат пишется в gradX и gradY.
+     */
+    public default void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                                 int offset, int count) {
+        for (int i = offset; i < offset + count; ++i) {
+            Point2D.Double grad = backward(xs[i], ys[i]);
+            gradX[i] = grad.x;
+            gradY[i] = grad.y;
+        }
+    }
 }
@@ -1,100 +1,257 @@
 package gradient;
 
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.geom.AffineTransform;
-import java.awt.geom.Point2D;
+import java.awt.geom.Path2D;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.JPanel;
 
+import gradient.optimizer.GradientDescent;
+import gradient.optimizer.Optimizer;
+import model.GameLoop;
+import render.RobotSpriteCache;
+
+/**
+ * Спуск робота (или роя) по поверхности функции.
+ *
+ * Шаг спуска идёт в потоке модели (m_gameLoop), а клики и выбор в окне - в
+ * EDT. Поэтому EDT не трогает оптимизатор, детектор застоя и позицию: смена
+ * стартовой точки, функции и алгоритма копится в pending и применяется
+ * потоком модели перед следующим шагом. В EDT остаётся только перестройка
+ * картинки поверхности.
+ */
 public class GradientVisualizer extends JPanel
 {
-    private final Timer m_timer = initTimer();
-
-    private static Timer initTimer()
-    {
-        Timer timer = new Timer("events generator", true);
-        return timer;
-    }
-
     private volatile double m_robotPositionX = 0;
     private volatile double m_robotPositionY = 0;
     private volatile double m_robotDirection = 0;
+    private volatile double m_previousPositionX = 0;
+    private volatile double m_previousPositionY = 0;
+
+    private final GameLoop m_gameLoop = new GameLoop("events generator", 10, 5, robotRedrawPeriod,
+        (duration) -> onModelUpdateEvent(), (interpolation) -> onRedrawEvent());
 
     private volatile GradientFunction gradient;
     private double learningRate;
-    private BufferedImage surface;
+    private final AtomicReference<PendingChange> pending = new AtomicReference<>();
+    // дальше - только поток модели
+    private GradientFunction modelGradient;
+    private Optimizer optimizer;
+    private volatile boolean converged;
+    private final double[] position = new double[2];
+
+    private static final double gradientTolerance = 1e-3;
+    private static final double stepTolerance = 1e-4;
+    private final StagnationDetector stagnation = new StagnationDetector();
+    private volatile BufferedImage surface;
+    private volatile int surfaceStep = 1;
+    private final SurfaceBuilder surfaceBuilder = new SurfaceBuilder();
+    private final ProgressiveSurfaceRenderer surfaceRenderer =
+            new ProgressiveSurfaceRenderer(surfaceBuilder, this::onSurfaceReady);
+
+    private static final int basinStep = 2;
+    private final BasinMapper basinMapper = new BasinMapper(this::onBasinMapReady);
+    private volatile BasinMap basinMap;
+    private volatile boolean showBasinMap;
 
     private final static double minWave = 380;
     private final static double maxWave = 781;
 
-    private ArrayList<Point> trace = new ArrayList<>();
+    private final Trajectory trace = new Trajectory();
+    private final Path2D.Double tracePath = new Path2D.Double();
+    private final RobotSpriteCache m_sprites = new RobotSpriteCache();
+
+    private static final double robotRedrawPeriod = 500;
+    private static final double swarmRedrawPeriod = 1000.0 / 30;
+    private static final double swarmSeedRadius = 30;
+    private static final int swarmPointColor = 0xFFFFFFFF;
+
+    private volatile Swarm swarm;
+    private volatile boolean showHeatMap = true;
+    private final Palette heatPalette = new Palette(StandardColorMap.Viridis);
+    private BufferedImage swarmPoints;
+    private BufferedImage heatMap;
 
     public GradientVisualizer(GradientFunction strategy, double rate)
     {
         gradient = strategy;
-        surface = new BufferedImage(400, 400, BufferedImage.TYPE_INT_ARGB);
-        CalcSurface();
+        modelGradient = strategy;
+        surfaceRenderer.request(gradient, 400, 400);
         learningRate = rate;
-        m_timer.schedule(new TimerTask()
-        {
-            @Override
-            public void run()
-            {
-                onRedrawEvent();
-            }
-        }, 0, 500);
-        m_timer.schedule(new TimerTask()
+        optimizer = new GradientDescent(rate);
+        addMouseListener(new MouseAdapter()
         {
             @Override
-            public void run()
+            public void mouseClicked(MouseEvent e)
             {
-                onModelUpdateEvent();
+                Swarm current = swarm;
+                if (current != null)
+                {
+                    current.seedRegion(e.getX(), e.getY(), swarmSeedRadius,
+                            current.size(), getWidth(), getHeight());
+                }
+                else
+                {
+                    setStartPosition(e.getPoint());
+                }
+                repaint();
             }
-        }, 0, 10);
-
-        addMouseListener(new MouseAdapter()
+        });
+        addComponentListener(new ComponentAdapter()
         {
             @Override
-            public void mouseClicked(MouseEvent e)
+            public void componentResized(ComponentEvent e)
             {
-                setStartPosition(e.getPoint());
-                repaint();
+                CalcSurface();
             }
         });
         setDoubleBuffered(true);
+        m_gameLoop.start();
     }
 
+    /**
+     * Переносит робота в точку p и начинает спуск заново. Применяется
+     * потоком модели перед следующим шагом.
+     */
     protected void setStartPosition(Point p) {
-        m_robotPositionX = p.getX();
-        m_robotPositionY = p.getY();
-        trace.clear();
+        post(new PendingChange(new Point(p), null, null));
     }
 
-    protected void CalcSurface() {
-        double min = 1e9;
-        double max = -1e9;
-        for (int i = 0; i < surface.getWidth(); ++i) {
-            for (int j = 0; j < surface.getHeight(); ++j) {
-                min = Math.min(min, -gradient.forward(i, j));
-                max = Math.max(max, -gradient.forward(i, j));
-            }
+    public void setColorMap(ColorMap colorMap) {
+        surfaceBuilder.setPalette(new Palette(colorMap));
+        CalcSurface();
+    }
+
+    public void setGradientFunction(GradientFunction function) {
+        gradient = function;
+        post(new PendingChange(null, function, null));
+        CalcSurface();
+    }
+
+    /**
+     * Меняет алгоритм спуска; робот продолжает из текущей точки.
+     */
+    public void setOptimizer(Optimizer newOptimizer) {
+        post(new PendingChange(null, null, newOptimizer));
+    }
+
+    private void post(PendingChange change) {
+        pending.accumulateAndGet(change, PendingChange::merge);
+    }
+
+    /**
+     * Применяет накопленные из EDT изменения. Только поток модели.
+     */
+    private void applyPending() {
+        PendingChange change = pending.getAndSet(null);
+        if (change == null) {
+            return;
         }
+        if (change.function != null) {
+            modelGradient = change.function;
+        }
+        if (change.optimizer != null) {
+            optimizer = change.optimizer;
+        }
+        if (change.start != null) {
+            m_robotPositionX = change.start.getX();
+            m_robotPositionY = change.start.getY();
+            m_previousPositionX = m_robotPositionX;
+            m_previousPositionY = m_robotPositionY;
+            optimizer.reset();
+            trace.clear();
+            trace.add(m_robotPositionX, m_robotPositionY);
+        }
+        stagnation.reset();
+        converged = false;
+    }
 
-        for (int i = 0; i < surface.getWidth(); ++i) {
-            for (int j = 0; j < surface.getHeight(); ++j) {
-                double val = -gradient.forward(i, j);
-                surface.setRGB(i, j, waveLengthToRGB(getWave(val, min, max)));
-            }
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    /**
+     * Включает режим роя: вместо одного робота по поверхности спускаются
+     * agents агентов, рассыпанных по полю. Клик перерассыпает их вокруг
+     * точки клика.
+     */
+    public void enableSwarm(int agents, SwarmSeeding seeding) {
+        Swarm newSwarm = new Swarm(learningRate, 4);
+        newSwarm.seed(seeding, agents, Math.max(getWidth(), 1), Math.max(getHeight(), 1));
+        swarm = newSwarm;
+        m_gameLoop.setRenderPeriodMillis(swarmRedrawPeriod);
+    }
+
+    public void disableSwarm() {
+        swarm = null;
+        m_gameLoop.setRenderPeriodMillis(robotRedrawPeriod);
+        repaint();
+    }
+
+    public void setShowHeatMap(boolean show) {
+        showHeatMap = show;
+        repaint();
+    }
+
+    /**
+     * Включает карту бассейнов притяжения поверх поверхности. Карта
+     * считается в фоне и пересчитывается при смене функции и размеров.
+     */
+    public void setShowBasinMap(boolean show) {
+        showBasinMap = show;
+        if (show) {
+            requestBasinMap();
+        } else {
+            basinMapper.cancel();
         }
+        repaint();
+    }
+
+    /**
+     * Последняя готовая карта бассейнов для текущей функции или null.
+     */
+    public BasinMap getBasinMap() {
+        BasinMap map = basinMap;
+        return map != null && map.getFunction() == gradient ? map : null;
+    }
+
+    public boolean isConverged() {
+        return converged;
     }
 
-    protected double getWave(double value, double min, double max) {
+    protected void CalcSurface() {
+        surfaceRenderer.request(gradient, getWidth(), getHeight());
+        if (showBasinMap) {
+            requestBasinMap();
+        }
+    }
+
+    private void requestBasinMap() {
+        basinMapper.request(gradient, learningRate, getWidth(), getHeight(), basinStep);
+    }
+
+    private void onBasinMapReady(BasinMap map) {
+        EventQueue.invokeLater(() -> {
+            basinMap = map;
+            repaint();
+        });
+    }
+
+    private void onSurfaceReady(BufferedImage image, int step) {
+        EventQueue.invokeLater(() -> {
+            surface = image;
+            surfaceStep = step;
+            repaint();
+        });
+    }
+
+    protected static double getWave(double value, double min, double max) {
         double diffWave = maxWave - minWave;
         return (value - min) * diffWave / (max - min) + minWave;
     }
@@ -121,12 +278,34 @@ public class GradientVisualizer extends JPanel
 
     protected void onModelUpdateEvent()
     {
-        Point2D.Double grad = gradient.backward(m_robotPositionX, m_robotPositionY);
-        double newX = m_robotPositionX - grad.getX() * learningRate;
-        double newY = m_robotPositionY - grad.getY() * learningRate;
+        applyPending();
+        Swarm current = swarm;
+        if (current != null)
+        {
+            current.step(modelGradient);
+            return;
+        }
+        if (converged)
+        {
+            return;
+        }
+        position[0] = m_robotPositionX;
+        position[1] = m_robotPositionY;
+        double gradNorm = optimizer.step(modelGradient, position);
+        double newX = position[0];
+        double newY = position[1];
+        if (gradNorm < gradientTolerance
+                || distance(m_robotPositionX, m_robotPositionY, newX, newY) < stepTolerance
+                || stagnation.update(newX, newY))
+        {
+            converged = true;
+        }
         m_robotDirection = angleTo(m_robotPositionX, m_robotPositionY, newX, newY);
+        m_previousPositionX = m_robotPositionX;
+        m_previousPositionY = m_robotPositionY;
         m_robotPositionX = newX;
         m_robotPositionY = newY;
+        trace.add(newX, newY);
     }
 
     private static double asNormalizedRadians(double angle)
@@ -153,63 +332,84 @@ public class GradientVisualizer extends JPanel
         super.paint(g);
         Graphics2D g2d = (Graphics2D)g;
         drawSurface(g2d);
+        if (showBasinMap)
+        {
+            drawBasinMap(g2d);
+        }
+        Swarm current = swarm;
+        if (current != null)
+        {
+            drawSwarm(g2d, current);
+            return;
+        }
         drawTrace(g2d);
-        drawRobot(g2d, round(m_robotPositionX), round(m_robotPositionY), m_robotDirection);
+        double alpha = m_gameLoop.getInterpolation();
+        double x = m_previousPositionX + (m_robotPositionX - m_previousPositionX) * alpha;
+        double y = m_previousPositionY + (m_robotPositionY - m_previousPositionY) * alpha;
+        drawRobot(g2d, round(x), round(y), m_robotDirection);
     }
 
-    private static void fillOval(Graphics g, int centerX, int centerY, int diam1, int diam2)
+    private void drawRobot(Graphics2D g, int x, int y, double direction)
     {
-        g.fillOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+        int robotCenterX = x;
+        int robotCenterY = y;
+        m_sprites.drawRobot(g, robotCenterX, robotCenterY, direction);
     }
 
-    private static void drawOval(Graphics g, int centerX, int centerY, int diam1, int diam2)
+    private void drawSwarm(Graphics2D g, Swarm current)
     {
-        g.drawOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+        if (showHeatMap)
+        {
+            int columns = current.getColumns();
+            int rows = current.getRows();
+            if (heatMap == null || heatMap.getWidth() != columns || heatMap.getHeight() != rows)
+            {
+                heatMap = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+            }
+            if (current.renderHeatMap(pixelsOf(heatMap), columns, rows, heatPalette))
+            {
+                int cell = current.getCellSize();
+                g.drawImage(heatMap, 0, 0, columns * cell, rows * cell, null);
+            }
+        }
+        int width = Math.max(getWidth(), 1);
+        int height = Math.max(getHeight(), 1);
+        if (swarmPoints == null || swarmPoints.getWidth() != width || swarmPoints.getHeight() != height)
+        {
+            swarmPoints = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        current.renderPoints(pixelsOf(swarmPoints), width, height, swarmPointColor);
+        g.drawImage(swarmPoints, 0, 0, null);
     }
 
-    private void drawRobot(Graphics2D g, int x, int y, double direction)
+    private static int[] pixelsOf(BufferedImage image)
     {
-        int robotCenterX = round(m_robotPositionX);
-        int robotCenterY = round(m_robotPositionY);
-        addPointToTrace(robotCenterX, robotCenterY);
-        AffineTransform t = AffineTransform.getRotateInstance(direction, robotCenterX, robotCenterY);
-        g.setTransform(t);
-        g.setColor(Color.MAGENTA);
-        fillOval(g, robotCenterX, robotCenterY, 30, 10);
-        g.setColor(Color.BLACK);
-        drawOval(g, robotCenterX, robotCenterY, 30, 10);
-        g.setColor(Color.WHITE);
-        fillOval(g, robotCenterX  + 10, robotCenterY, 5, 5);
-        g.setColor(Color.BLACK);
-        drawOval(g, robotCenterX  + 10, robotCenterY, 5, 5);
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
     }
 
-    private void addPointToTrace(int x, int y) {
-        if (trace.isEmpty()) {
-            trace.add(new Point(x, y));
-        } else {
-            Point last = trace.get(trace.size() - 1);
-            if (distance(x, y, last.x, last.y) > 1) {
-                trace.add(new Point(x, y));
-            }
+    private void drawSurface(Graphics2D g)
+    {
+        BufferedImage image = surface;
+        if (image == null) {
+            return;
         }
+        int step = surfaceStep;
+        g.drawImage(image, 0, 0, image.getWidth() * step, image.getHeight() * step, null);
     }
 
-    private void drawSurface(Graphics2D g)
-    {
-        g.drawImage(surface, 0, 0, null);
+    private void drawBasinMap(Graphics2D g) {
+        BasinMap map = getBasinMap();
+        if (map == null) {
+            return;
+        }
+        int step = map.getStep();
+        g.drawImage(map.getOverlay(), 0, 0, map.getColumns() * step, map.getRows() * step, null);
     }
 
     private void drawTrace(Graphics2D g) {
-        for (Point point : trace) {
-            g.setColor(Color.WHITE);
-            fillOval(g, round(point.getX()), round(point.getY()), 10, 10);
-        }
-        for (int i = 0; i + 1 < trace.size(); ++i) {
-            g.setColor(Color.WHITE);
-            g.drawLine(round(trace.get(i).getX()), round(trace.get(i).getY()),
-                    round(trace.get(i + 1).getX()),round(trace.get(i + 1).getY()));
-        }
+        trace.toPath(tracePath);
+        g.setColor(Color.WHITE);
+        g.draw(tracePath);
     }
 
     static private double Gamma = 0.80;
@@ -267,4 +467,32 @@ public class GradientVisualizer extends JPanel
 
         return new Color(rgb[0], rgb[1], rgb[2]).getRGB();
     }
+
+    /**
+     * Изменения из EDT, ещё не применённые потоком модели; null - без изменений.
+     */
+    private static final class PendingChange {
+        final Point start;
+        final GradientFunction function;
+        final Optimizer optimizer;
+
+        PendingChange(Point start, GradientFunction function, Optimizer optimizer) {
+            this.start = start;
+            this.function = function;
+            this.optimizer = optimizer;
+        }
+
+        /**
+         * Изменения earlier (может быть null), поверх которых сделаны later.
+         */
+        static PendingChange merge(PendingChange earlier, PendingChange later) {
+            if (earlier == null) {
+                return later;
+            }
+            return new PendingChange(
+                    later.start != null ? later.start : earlier.start,
+                    later.function != null ? later.function : earlier.function,
+                    later.optimizer != null ? later.optimizer : earlier.optimizer);
+        }
+    }
 }
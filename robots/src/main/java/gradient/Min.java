@@ -0,0 +1,95 @@
+package gradient;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Минимум из нескольких функций; градиент берётся у той, что сейчас меньше.
+ */
+public class Min implements GradientFunction {
+
+    private final GradientFunction[] terms;
+
+    public Min(GradientFunction... terms) {
+        if (terms.length == 0) {
+            throw new IllegalArgumentException("min needs at least one term");
+        }
+        this.terms = terms.clone();
+    }
+
+    private int argMin(double x, double y) {
+        int best = 0;
+        double bestValue = terms[0].forward(x, y);
+        for (int t = 1; t < terms.length; ++t) {
+            double value = terms[t].forward(x, y);
+            if (value < bestValue) {
+                best = t;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public double forward(double x, double y) {
+        double min = terms[0].forward(x, y);
+        for (int t = 1; t < terms.length; ++t) {
+            min = Math.min(min, terms[t].forward(x, y));
+        }
+        return min;
+    }
+
+    @Override
+    public Point2D.Double backward(double x, double y) {
+        return terms[argMin(x, y)].backward(x, y);
+    }
+
+    @Override
+    public void forwardRow(double startX, double stepX, double y,
+                           double[] values, int offset, int count) {
+        terms[0].forwardRow(startX, stepX, y, values, offset, count);
+        double[] scratch = Scratch.acquire(count);
+        try {
+            for (int t = 1; t < terms.length; ++t) {
+                terms[t].forwardRow(startX, stepX, y, scratch, 0, count);
+                for (int k = 0; k < count; ++k) {
+                    values[offset + k] = Math.min(values[offset + k], scratch[k]);
+                }
+            }
+        } finally {
+            Scratch.release();
+        }
+    }
+
+    /**
+     * Градиент каждой функции считается на всём блоке, а в точку попадает
+     * градиент той, что там меньше; при равенстве - первой, как в argMin().
+     */
+    @Override
+    public void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                         int offset, int count) {
+        double[] best = Scratch.acquire(offset + count);
+        double[] values = Scratch.acquire(offset + count);
+        double[] termX = Scratch.acquire(offset + count);
+        double[] termY = Scratch.acquire(offset + count);
+        try {
+            terms[0].forward(xs, ys, best, offset, count);
+            terms[0].backward(xs, ys, gradX, gradY, offset, count);
+            for (int t = 1; t < terms.length; ++t) {
+                terms[t].forward(xs, ys, values, offset, count);
+                terms[t].backward(xs, ys, termX, termY, offset, count);
+                for (int i = offset; i < offset + count; ++i) {
+                    if (values[i] < best[i]) {
+                        best[i] = values[i];
+                        gradX[i] = termX[i];
+                        gradY[i] = termY[i];
+                    }
+                }
+            }
+        } finally {
+            Scratch.release();
+            Scratch.release();
+            Scratch.release();
+            Scratch.release();
+        }
+    }
+}
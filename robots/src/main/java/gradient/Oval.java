@@ -30,4 +30,33 @@ public class Oval implements GradientFunction {
 
         return new Point2D.Double(2 * diffX / aVal, 2 * diffY / bVal);
     }
+
+    @Override
+    public void forward(double[] xs, double[] ys, double[] values, int offset, int count) {
+        for (int i = offset; i < offset + count; ++i) {
+            double diffX = centerX - xs[i];
+            double diffY = centerY - ys[i];
+            values[i] = aVal * diffX * diffX + bVal * diffY * diffY;
+        }
+    }
+
+    @Override
+    public void forwardRow(double startX, double stepX, double y,
+                           double[] values, int offset, int count) {
+        double diffY = centerY - y;
+        double termY = bVal * diffY * diffY;
+        for (int k = 0; k < count; ++k) {
+            double diffX = centerX - (startX + k * stepX);
+            values[offset + k] = aVal * diffX * diffX + termY;
+        }
+    }
+
+    @Override
+    public void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                         int offset, int count) {
+        for (int i = offset; i < offset + count; ++i) {
+            gradX[i] = 2 * (xs[i] - centerX) / aVal;
+            gradY[i] = 2 * (ys[i] - centerY) / bVal;
+        }
+    }
 }
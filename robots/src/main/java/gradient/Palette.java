@@ -0,0 +1,52 @@
+package gradient;
+
+/**
+ * Таблица заранее посчитанных цветов ColorMap. lookup() - это одно умножение
+ * и чтение из массива, без ветвлений по спектру, Math.pow и new Color.
+ */
+public final class Palette {
+
+    public static final int DEFAULT_SIZE = 4096;
+
+    private final ColorMap colorMap;
+    private final int[] colors;
+    private final double scale;
+
+    public Palette(ColorMap colorMap) {
+        this(colorMap, DEFAULT_SIZE);
+    }
+
+    public Palette(ColorMap colorMap, int size) {
+        if (size < 2) {
+            throw new IllegalArgumentException("palette needs at least two entries: " + size);
+        }
+        this.colorMap = colorMap;
+        colors = new int[size];
+        for (int i = 0; i < size; ++i) {
+            colors[i] = colorMap.toARGB((double) i / (size - 1));
+        }
+        scale = size - 1;
+    }
+
+    public ColorMap getColorMap() {
+        return colorMap;
+    }
+
+    public int size() {
+        return colors.length;
+    }
+
+    /**
+     * Цвет для t из [0, 1]; значения вне отрезка и NaN прижимаются к краям.
+     */
+    public int lookup(double t) {
+        int index = (int) (t * scale + 0.5);
+        if (index <= 0) {
+            return colors[0];
+        }
+        if (index >= colors.length) {
+            return colors[colors.length - 1];
+        }
+        return colors[index];
+    }
+}
@@ -0,0 +1,68 @@
+package gradient;
+
+import java.awt.geom.Point2D;
+
+public class Product implements GradientFunction {
+
+    private final GradientFunction first;
+    private final GradientFunction second;
+
+    public Product(GradientFunction first, GradientFunction second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public double forward(double x, double y) {
+        return first.forward(x, y) * second.forward(x, y);
+    }
+
+    @Override
+    public Point2D.Double backward(double x, double y) {
+        double firstValue = first.forward(x, y);
+        double secondValue = second.forward(x, y);
+        Point2D.Double firstGrad = first.backward(x, y);
+        Point2D.Double secondGrad = second.backward(x, y);
+        return new Point2D.Double(firstGrad.x * secondValue + firstValue * secondGrad.x,
+                firstGrad.y * secondValue + firstValue * secondGrad.y);
+    }
+
+    @Override
+    public void forwardRow(double startX, double stepX, double y,
+                           double[] values, int offset, int count) {
+        first.forwardRow(startX, stepX, y, values, offset, count);
+        double[] scratch = Scratch.acquire(count);
+        try {
+            second.forwardRow(startX, stepX, y, scratch, 0, count);
+            for (int k = 0; k < count; ++k) {
+                values[offset + k] *= scratch[k];
+            }
+        } finally {
+            Scratch.release();
+        }
+    }
+
+    @Override
+    public void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                         int offset, int count) {
+        double[] firstValues = Scratch.acquire(offset + count);
+        double[] secondValues = Scratch.acquire(offset + count);
+        double[] secondX = Scratch.acquire(offset + count);
+        double[] secondY = Scratch.acquire(offset + count);
+        try {
+            first.forward(xs, ys, firstValues, offset, count);
+            second.forward(xs, ys, secondValues, offset, count);
+            first.backward(xs, ys, gradX, gradY, offset, count);
+            second.backward(xs, ys, secondX, secondY, offset, count);
+            for (int i = offset; i < offset + count; ++i) {
+                gradX[i] = gradX[i] * secondValues[i] + firstValues[i] * secondX[i];
+                gradY[i] = gradY[i] * secondValues[i] + firstValues[i] * secondY[i];
+            }
+        } finally {
+            Scratch.release();
+            Scratch.release();
+            Scratch.release();
+            Scratch.release();
+        }
+    }
+}
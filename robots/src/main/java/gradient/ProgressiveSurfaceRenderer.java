@@ -0,0 +1,62 @@
+package gradient;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Строит поверхность в фоне по уровням: сначала грубо (1/8 разрешения),
+ * потом 1/4, 1/2 и полностью. Каждый готовый уровень сразу отдаётся
+ * слушателю. Новый запрос отменяет всё, что ещё строится по старому.
+ */
+public class ProgressiveSurfaceRenderer {
+
+    public interface Listener {
+        /**
+         * Готов очередной уровень: image в step раз меньше поверхности.
+         * Вызывается из фонового потока.
+         */
+        public void onSurfaceReady(BufferedImage image, int step);
+    }
+
+    private static final int[] STEPS = {8, 4, 2, 1};
+
+    private final SurfaceBuilder builder;
+    private final Listener listener;
+    private final AtomicLong generation = new AtomicLong();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "surface builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ProgressiveSurfaceRenderer(SurfaceBuilder builder, Listener listener) {
+        this.builder = builder;
+        this.listener = listener;
+    }
+
+    public void request(GradientFunction function, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        long current = generation.incrementAndGet();
+        executor.execute(() -> {
+            for (int step : STEPS) {
+                if (generation.get() != current) {
+                    return;
+                }
+                BufferedImage image = builder.build(function, width, height, step,
+                        () -> generation.get() != current);
+                if (image == null || generation.get() != current) {
+                    return;
+                }
+                listener.onSurfaceReady(image, step);
+            }
+        });
+    }
+
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+}
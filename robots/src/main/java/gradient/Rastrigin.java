@@ -0,0 +1,49 @@
+package gradient;
+
+import java.awt.geom.Point2D;
+
+/**
+ * 2A + x^2 - A cos(2 pi x) + y^2 - A cos(2 pi y): много локальных минимумов
+ * вокруг глобального в нуле.
+ */
+public class Rastrigin implements GradientFunction {
+
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private final double aVal;
+
+    public Rastrigin(double a) {
+        aVal = a;
+    }
+
+    @Override
+    public double forward(double x, double y) {
+        return 2 * aVal + x * x - aVal * Math.cos(TWO_PI * x) + y * y - aVal * Math.cos(TWO_PI * y);
+    }
+
+    @Override
+    public Point2D.Double backward(double x, double y) {
+        return new Point2D.Double(2 * x + aVal * TWO_PI * Math.sin(TWO_PI * x),
+                2 * y + aVal * TWO_PI * Math.sin(TWO_PI * y));
+    }
+
+    @Override
+    public void forwardRow(double startX, double stepX, double y,
+                           double[] values, int offset, int count) {
+        double termY = 2 * aVal + y * y - aVal * Math.cos(TWO_PI * y);
+        for (int k = 0; k < count; ++k) {
+            double x = startX + k * stepX;
+            values[offset + k] = termY + x * x - aVal * Math.cos(TWO_PI * x);
+        }
+    }
+
+    @Override
+    public void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                         int offset, int count) {
+        double factor = aVal * TWO_PI;
+        for (int i = offset; i < offset + count; ++i) {
+            gradX[i] = 2 * xs[i] + factor * Math.sin(TWO_PI * xs[i]);
+            gradY[i] = 2 * ys[i] + factor * Math.sin(TWO_PI * ys[i]);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package gradient;
+
+import java.awt.geom.Point2D;
+
+/**
+ * (a - x)^2 + b * (y - x^2)^2, минимум в точке (a, a^2).
+ */
+public class Rosenbrock implements GradientFunction {
+
+    private final double aVal;
+    private final double bVal;
+
+    public Rosenbrock(double a, double b) {
+        aVal = a;
+        bVal = b;
+    }
+
+    @Override
+    public double forward(double x, double y) {
+        double diffA = aVal - x;
+        double diffB = y - x * x;
+        return diffA * diffA + bVal * diffB * diffB;
+    }
+
+    @Override
+    public Point2D.Double backward(double x, double y) {
+        double diffB = y - x * x;
+        return new Point2D.Double(-2 * (aVal - x) - 4 * bVal * x * diffB, 2 * bVal * diffB);
+    }
+
+    @Override
+    public void forwardRow(double startX, double stepX, double y,
+                           double[] values, int offset, int count) {
+        for (int k = 0; k < count; ++k) {
+            double x = startX + k * stepX;
+            double diffA = aVal - x;
+            double diffB = y - x * x;
+            values[offset + k] = diffA * diffA + bVal * diffB * diffB;
+        }
+    }
+
+    @Override
+    public void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                         int offset, int count) {
+        for (int i = offset; i < offset + count; ++i) {
+            double x = xs[i];
+            double diffB = ys[i] - x * x;
+            gradX[i] = -2 * (aVal - x) - 4 * bVal * x * diffB;
+            gradY[i] = 2 * bVal * diffB;
+        }
+    }
+}
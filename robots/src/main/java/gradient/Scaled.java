@@ -0,0 +1,64 @@
+package gradient;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Переводит пиксели окна в координаты функции: u = (x - originX) / scale.
+ * Нужна для функций вроде Rosenbrock и Rastrigin, у которых интересная
+ * область имеет размер порядка единиц, а не сотен пикселей.
+ */
+public class Scaled implements GradientFunction {
+
+    private final GradientFunction function;
+    private final double originX;
+    private final double originY;
+    private final double scale;
+
+    public Scaled(GradientFunction function, double originX, double originY, double scale) {
+        this.function = function;
+        this.originX = originX;
+        this.originY = originY;
+        this.scale = scale;
+    }
+
+    @Override
+    public double forward(double x, double y) {
+        return function.forward((x - originX) / scale, (y - originY) / scale);
+    }
+
+    @Override
+    public Point2D.Double backward(double x, double y) {
+        Point2D.Double grad = function.backward((x - originX) / scale, (y - originY) / scale);
+        grad.x /= scale;
+        grad.y /= scale;
+        return grad;
+    }
+
+    @Override
+    public void forwardRow(double startX, double stepX, double y,
+                           double[] values, int offset, int count) {
+        function.forwardRow((startX - originX) / scale, stepX / scale, (y - originY) / scale,
+                values, offset, count);
+    }
+
+    @Override
+    public void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                         int offset, int count) {
+        double[] us = Scratch.acquire(offset + count);
+        double[] vs = Scratch.acquire(offset + count);
+        try {
+            for (int i = offset; i < offset + count; ++i) {
+                us[i] = (xs[i] - originX) / scale;
+                vs[i] = (ys[i] - originY) / scale;
+            }
+            function.backward(us, vs, gradX, gradY, offset, count);
+            for (int i = offset; i < offset + count; ++i) {
+                gradX[i] /= scale;
+                gradY[i] /= scale;
+            }
+        } finally {
+            Scratch.release();
+            Scratch.release();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package gradient;
+
+import java.util.Arrays;
+
+/**
+ * Временные буферы на поток для составных функций, чтобы вычисление строки
+ * значений или блока градиентов не выделяло память. Буферы выдаются
+ * стеком: вложенная составная функция получает свой буфер, а не затирает
+ * буфер внешней. Каждый acquire() должен закрываться release().
+ */
+final class Scratch {
+
+    private static final ThreadLocal<Scratch> STACK = ThreadLocal.withInitial(Scratch::new);
+
+    private double[][] buffers = new double[4][];
+    private int depth;
+
+    private Scratch() {
+    }
+
+    static double[] acquire(int size) {
+        Scratch scratch = STACK.get();
+        if (scratch.depth == scratch.buffers.length) {
+            scratch.buffers = Arrays.copyOf(scratch.buffers, scratch.depth * 2);
+        }
+        double[] buffer = scratch.buffers[scratch.depth];
+        if (buffer == null || buffer.length < size) {
+            buffer = new double[Math.max(size, 256)];
+            scratch.buffers[scratch.depth] = buffer;
+        }
+        scratch.depth++;
+        return buffer;
+    }
+
+    static void release() {
+        STACK.get().depth--;
+    }
+}
@@ -0,0 +1,60 @@
+package gradient;
+
+/**
+ * Признак остановки для спуска, который не сходится по градиенту. На
+ * функциях с изломом в минимуме (Circle, Circle2) градиент не убывает к
+ * нулю, и спуск с постоянным шагом навсегда остаётся в колебании вокруг
+ * минимума. Детектор считает такое колебание сходимостью: за window шагов
+ * подряд точка не вышла из круга radius вокруг опорной, но прошла при этом
+ * путь не меньше двух радиусов. Второе условие отличает колебание от
+ * медленного сползания по пологому склону, где путь равен смещению.
+ */
+public class StagnationDetector {
+
+    public static final double DEFAULT_RADIUS = 1;
+    public static final int DEFAULT_WINDOW = 50;
+
+    private final double radius;
+    private final int window;
+    private double anchorX;
+    private double anchorY;
+    private double lastX;
+    private double lastY;
+    private double path;
+    private int steps = -1;
+
+    public StagnationDetector() {
+        this(DEFAULT_RADIUS, DEFAULT_WINDOW);
+    }
+
+    public StagnationDetector(double radius, int window) {
+        this.radius = radius;
+        this.window = window;
+    }
+
+    /**
+     * Учитывает очередное положение.
+     * @return true, если точка колеблется на месте
+     */
+    public boolean update(double x, double y) {
+        double diffX = x - anchorX;
+        double diffY = y - anchorY;
+        if (steps < 0 || diffX * diffX + diffY * diffY > radius * radius) {
+            anchorX = x;
+            anchorY = y;
+            lastX = x;
+            lastY = y;
+            path = 0;
+            steps = 0;
+            return false;
+        }
+        path += Math.hypot(x - lastX, y - lastY);
+        lastX = x;
+        lastY = y;
+        return ++steps >= window && path >= 2 * radius;
+    }
+
+    public void reset() {
+        steps = -1;
+    }
+}
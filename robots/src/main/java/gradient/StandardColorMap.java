@@ -0,0 +1,53 @@
+package gradient;
+
+public enum StandardColorMap implements ColorMap {
+
+    /** Спектр видимого света 380-781 нм, исходная раскраска поверхности */
+    Spectrum {
+        @Override
+        public int toARGB(double t) {
+            return GradientVisualizer.waveLengthToRGB(GradientVisualizer.getWave(t, 0, 1));
+        }
+    },
+
+    Viridis {
+        private final int[] stops = {
+                0x440154, 0x482878, 0x3E4989, 0x31688E, 0x26828E,
+                0x1F9E89, 0x35B779, 0x6DCD59, 0xFDE725
+        };
+
+        @Override
+        public int toARGB(double t) {
+            double position = clamp(t) * (stops.length - 1);
+            int index = Math.min((int) position, stops.length - 2);
+            double frac = position - index;
+            int from = stops[index];
+            int to = stops[index + 1];
+            return 0xFF000000
+                    | mix(from >> 16, to >> 16, frac) << 16
+                    | mix(from >> 8, to >> 8, frac) << 8
+                    | mix(from, to, frac);
+        }
+    },
+
+    Grayscale {
+        @Override
+        public int toARGB(double t) {
+            int level = (int) Math.round(clamp(t) * 255);
+            return 0xFF000000 | level << 16 | level << 8 | level;
+        }
+    };
+
+    private static double clamp(double t) {
+        if (!(t > 0)) {
+            return 0;
+        }
+        return Math.min(t, 1);
+    }
+
+    private static int mix(int from, int to, double frac) {
+        from &= 0xFF;
+        to &= 0xFF;
+        return (int) Math.round(from + (to - from) * frac);
+    }
+}
@@ -0,0 +1,72 @@
+package gradient;
+
+import java.awt.geom.Point2D;
+
+public class Sum implements GradientFunction {
+
+    private final GradientFunction[] terms;
+
+    public Sum(GradientFunction... terms) {
+        if (terms.length == 0) {
+            throw new IllegalArgumentException("sum needs at least one term");
+        }
+        this.terms = terms.clone();
+    }
+
+    @Override
+    public double forward(double x, double y) {
+        double sum = 0;
+        for (GradientFunction term : terms) {
+            sum += term.forward(x, y);
+        }
+        return sum;
+    }
+
+    @Override
+    public Point2D.Double backward(double x, double y) {
+        Point2D.Double result = new Point2D.Double();
+        for (GradientFunction term : terms) {
+            Point2D.Double grad = term.backward(x, y);
+            result.x += grad.x;
+            result.y += grad.y;
+        }
+        return result;
+    }
+
+    @Override
+    public void forwardRow(double startX, double stepX, double y,
+                           double[] values, int offset, int count) {
+        terms[0].forwardRow(startX, stepX, y, values, offset, count);
+        double[] scratch = Scratch.acquire(count);
+        try {
+            for (int t = 1; t < terms.length; ++t) {
+                terms[t].forwardRow(startX, stepX, y, scratch, 0, count);
+                for (int k = 0; k < count; ++k) {
+                    values[offset + k] += scratch[k];
+                }
+            }
+        } finally {
+            Scratch.release();
+        }
+    }
+
+    @Override
+    public void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                         int offset, int count) {
+        terms[0].backward(xs, ys, gradX, gradY, offset, count);
+        double[] termX = Scratch.acquire(offset + count);
+        double[] termY = Scratch.acquire(offset + count);
+        try {
+            for (int t = 1; t < terms.length; ++t) {
+                terms[t].backward(xs, ys, termX, termY, offset, count);
+                for (int i = offset; i < offset + count; ++i) {
+                    gradX[i] += termX[i];
+                    gradY[i] += termY[i];
+                }
+            }
+        } finally {
+            Scratch.release();
+            Scratch.release();
+        }
+    }
+}
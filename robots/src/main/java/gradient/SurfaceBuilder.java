@@ -0,0 +1,128 @@
+package gradient;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Строит картинку поверхности функции параллельно по квадратным тайлам.
+ * Значение в каждой точке считается один раз и сохраняется в буфер,
+ * минимум и максимум собираются по тайлам, а цвета пишутся прямо в
+ * int[] растра через таблицу Palette, без setRGB.
+ */
+public class SurfaceBuilder {
+
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    private final int tileSize;
+    private volatile Palette palette = new Palette(StandardColorMap.Spectrum);
+    private double[] values = new double[0];
+
+    public SurfaceBuilder() {
+        this(DEFAULT_TILE_SIZE);
+    }
+
+    public SurfaceBuilder(int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be positive: " + tileSize);
+        }
+        this.tileSize = tileSize;
+    }
+
+    public Palette getPalette() {
+        return palette;
+    }
+
+    public void setPalette(Palette palette) {
+        this.palette = palette;
+    }
+
+    /**
+     * Строит поверхность width x height; точке картинки (i, j) соответствует
+     * значение -function.forward(i, j), как и раньше в CalcSurface.
+     */
+    public BufferedImage build(GradientFunction function, int width, int height) {
+        return build(function, width, height, 1, () -> false);
+    }
+
+    /**
+     * Строит поверхность с шагом step: картинка в step раз меньше по каждой
+     * оси, её точка (i, j) берёт значение в (i * step, j * step). Если
+     * cancelled вернёт true, построение бросается и результат - null.
+     */
+    public synchronized BufferedImage build(GradientFunction function, int fullWidth, int fullHeight,
+                                            int step, BooleanSupplier cancelled) {
+        int width = (fullWidth + step - 1) / step;
+        int height = (fullHeight + step - 1) / step;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        if (values.length < width * height) {
+            values = new double[width * height];
+        }
+        double[] buffer = values;
+
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+        int tiles = tilesX * tilesY;
+        double[] tileMin = new double[tiles];
+        double[] tileMax = new double[tiles];
+
+        IntStream.range(0, tiles).parallel().forEach(tile -> {
+            int fromX = (tile % tilesX) * tileSize;
+            int fromY = (tile / tilesX) * tileSize;
+            int toX = Math.min(fromX + tileSize, width);
+            int toY = Math.min(fromY + tileSize, height);
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            if (cancelled.getAsBoolean()) {
+                tileMin[tile] = min;
+                tileMax[tile] = max;
+                return;
+            }
+            for (int j = fromY; j < toY; ++j) {
+                int row = j * width;
+                function.forwardRow(fromX * step, step, j * step, buffer, row + fromX, toX - fromX);
+                for (int i = fromX; i < toX; ++i) {
+                    double val = -buffer[row + i];
+                    buffer[row + i] = val;
+                    if (val < min) {
+                        min = val;
+                    }
+                    if (val > max) {
+                        max = val;
+                    }
+                }
+            }
+            tileMin[tile] = min;
+            tileMax[tile] = max;
+        });
+
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int tile = 0; tile < tiles; ++tile) {
+            min = Math.min(min, tileMin[tile]);
+            max = Math.max(max, tileMax[tile]);
+        }
+        if (cancelled.getAsBoolean()) {
+            return null;
+        }
+        double surfaceMin = min;
+        double scale = max > min ? 1 / (max - min) : 0;
+        Palette colors = palette;
+
+        IntStream.range(0, tiles).parallel().forEach(tile -> {
+            int fromX = (tile % tilesX) * tileSize;
+            int fromY = (tile / tilesX) * tileSize;
+            int toX = Math.min(fromX + tileSize, width);
+            int toY = Math.min(fromY + tileSize, height);
+            for (int j = fromY; j < toY; ++j) {
+                int row = j * width;
+                for (int i = fromX; i < toX; ++i) {
+                    pixels[row + i] = colors.lookup((buffer[row + i] - surfaceMin) * scale);
+                }
+            }
+        });
+        return image;
+    }
+}
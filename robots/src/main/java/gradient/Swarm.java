@@ -0,0 +1,181 @@
+package gradient;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Рой агентов градиентного спуска на одной поверхности. Координаты и
+ * градиенты хранятся в параллельных массивах, градиенты считаются
+ * пакетным GradientFunction.backward кусками по CHUNK агентов на всех ядрах.
+ *
+ * Дополнительно копится карта посещений: сколько раз агенты побывали в
+ * каждой клетке cellSize x cellSize.
+ */
+public class Swarm {
+
+    private static final int CHUNK = 4096;
+
+    private final double learningRate;
+    private final int cellSize;
+    private final Random random = new Random();
+
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private double[] gradX = new double[0];
+    private double[] gradY = new double[0];
+    private volatile int count;
+
+    private int width;
+    private int height;
+    private int columns;
+    private int rows;
+    private int[] visits = new int[0];
+    private int maxVisits;
+
+    public Swarm(double learningRate, int cellSize) {
+        this.learningRate = learningRate;
+        this.cellSize = cellSize;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public synchronized void seed(SwarmSeeding seeding, int agents, int fieldWidth, int fieldHeight) {
+        resize(agents, fieldWidth, fieldHeight);
+        if (seeding == SwarmSeeding.Grid) {
+            int side = Math.max(1, (int) Math.ceil(Math.sqrt(agents)));
+            for (int i = 0; i < agents; ++i) {
+                xs[i] = (i % side + 0.5) * fieldWidth / side;
+                ys[i] = (i / side + 0.5) * fieldHeight / side;
+            }
+        } else {
+            for (int i = 0; i < agents; ++i) {
+                xs[i] = random.nextDouble() * fieldWidth;
+                ys[i] = random.nextDouble() * fieldHeight;
+            }
+        }
+        count = agents;
+    }
+
+    /**
+     * Равномерно рассыпает агентов в круге радиуса radius вокруг (x, y),
+     * например вокруг точки клика.
+     */
+    public synchronized void seedRegion(double x, double y, double radius,
+                                        int agents, int fieldWidth, int fieldHeight) {
+        resize(agents, fieldWidth, fieldHeight);
+        for (int i = 0; i < agents; ++i) {
+            double r = radius * Math.sqrt(random.nextDouble());
+            double angle = random.nextDouble() * 2 * Math.PI;
+            xs[i] = x + r * Math.cos(angle);
+            ys[i] = y + r * Math.sin(angle);
+        }
+        count = agents;
+    }
+
+    private void resize(int agents, int fieldWidth, int fieldHeight) {
+        if (xs.length < agents) {
+            xs = new double[agents];
+            ys = new double[agents];
+            gradX = new double[agents];
+            gradY = new double[agents];
+        }
+        width = fieldWidth;
+        height = fieldHeight;
+        columns = Math.max(1, (fieldWidth + cellSize - 1) / cellSize);
+        rows = Math.max(1, (fieldHeight + cellSize - 1) / cellSize);
+        if (visits.length < columns * rows) {
+            visits = new int[columns * rows];
+        }
+        Arrays.fill(visits, 0);
+        maxVisits = 0;
+    }
+
+    /**
+     * Один шаг спуска для всех агентов.
+     */
+    public synchronized void step(GradientFunction function) {
+        int agents = count;
+        double[] x = xs;
+        double[] y = ys;
+        double[] gx = gradX;
+        double[] gy = gradY;
+        int chunks = (agents + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = chunk * CHUNK;
+            int n = Math.min(CHUNK, agents - from);
+            function.backward(x, y, gx, gy, from, n);
+            for (int i = from; i < from + n; ++i) {
+                x[i] -= gx[i] * learningRate;
+                y[i] -= gy[i] * learningRate;
+            }
+        });
+
+        for (int i = 0; i < agents; ++i) {
+            int column = (int) x[i] / cellSize;
+            int row = (int) y[i] / cellSize;
+            if (x[i] >= 0 && y[i] >= 0 && column < columns && row < rows) {
+                int cell = row * columns + column;
+                int visited = ++visits[cell];
+                if (visited > maxVisits) {
+                    maxVisits = visited;
+                }
+            }
+        }
+    }
+
+    /**
+     * Рисует агентов точками color в пиксели картинки imageWidth x imageHeight,
+     * предварительно очистив её.
+     */
+    public synchronized void renderPoints(int[] pixels, int imageWidth, int imageHeight, int color) {
+        Arrays.fill(pixels, 0, imageWidth * imageHeight, 0);
+        for (int i = 0; i < count; ++i) {
+            int px = (int) xs[i];
+            int py = (int) ys[i];
+            if (xs[i] >= 0 && ys[i] >= 0 && px < imageWidth && py < imageHeight) {
+                pixels[py * imageWidth + px] = color;
+            }
+        }
+    }
+
+    /**
+     * Рисует карту посещений: одна точка картинки на клетку, цвет по
+     * логарифму числа посещений, полупрозрачный.
+     * @return false, если размеры картинки не совпадают с сеткой клеток
+     */
+    public synchronized boolean renderHeatMap(int[] pixels, int imageWidth, int imageHeight, Palette palette) {
+        if (imageWidth != columns || imageHeight != rows) {
+            return false;
+        }
+        double scale = maxVisits > 0 ? 1 / Math.log1p(maxVisits) : 0;
+        for (int cell = 0; cell < columns * rows; ++cell) {
+            int visited = visits[cell];
+            pixels[cell] = visited == 0 ? 0
+                    : (palette.lookup(Math.log1p(visited) * scale) & 0x00FFFFFF) | 0xA0000000;
+        }
+        return true;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getFieldWidth() {
+        return width;
+    }
+
+    public int getFieldHeight() {
+        return height;
+    }
+}
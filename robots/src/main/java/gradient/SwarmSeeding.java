@@ -0,0 +1,8 @@
+package gradient;
+
+public enum SwarmSeeding {
+    /** Равномерная сетка по всему полю */
+    Grid,
+    /** Случайные точки по всему полю */
+    Random
+}
@@ -0,0 +1,55 @@
+package gradient;
+
+import gradient.expr.Expression;
+
+/**
+ * Готовые рельефы для выбора в интерфейсе, в пикселях поля около 400x400.
+ * Функции с естественным масштабом порядка единиц (Rosenbrock, Rastrigin,
+ * формулы) переводятся в пиксели через Scaled.
+ */
+public enum Terrain {
+    Circle2,
+    Circle,
+    Oval,
+    GaussianWells,
+    WellsOnSlope,
+    Rosenbrock,
+    Rastrigin;
+
+    /** Начало координат и пикселей на единицу для формул из формы. */
+    public static final double FORMULA_ORIGIN = 200;
+    public static final double FORMULA_SCALE = 100;
+
+    public GradientFunction create() {
+        switch (this) {
+            case Circle:
+                return new gradient.Circle(200, 200);
+            case Oval:
+                return new gradient.Oval(200, 200);
+            case GaussianWells:
+                return new Min(new GaussianWell(120, 130, 60, 1000),
+                        new GaussianWell(290, 160, 45, 700),
+                        new GaussianWell(200, 300, 70, 1200));
+            case WellsOnSlope:
+                return new WeightedSum(new double[] {0.5, 1, 1},
+                        new GradientFunction[] {new gradient.Circle(200, 200),
+                                new GaussianWell(130, 200, 40, 600),
+                                new GaussianWell(280, 230, 50, 900)});
+            case Rosenbrock:
+                return new Scaled(new gradient.Rosenbrock(1, 100), 200, 100, 100);
+            case Rastrigin:
+                return new Scaled(new gradient.Rastrigin(10), 200, 200, 40);
+            default:
+                return new gradient.Circle2(50, 200, 350, 200);
+        }
+    }
+
+    /**
+     * Рельеф по формуле от x и y, где единица - FORMULA_SCALE пикселей от
+     * точки (FORMULA_ORIGIN, FORMULA_ORIGIN).
+     * @throws IllegalArgumentException если формула не разбирается
+     */
+    public static GradientFunction formula(String source) {
+        return new Scaled(Expression.compile(source), FORMULA_ORIGIN, FORMULA_ORIGIN, FORMULA_SCALE);
+    }
+}
@@ -0,0 +1,179 @@
+package gradient;
+
+import java.awt.geom.Path2D;
+
+/**
+ * Траектория агента ограниченного размера в кольцевых буферах примитивов.
+ *
+ * Точка добавляется, только если она отошла от последней больше чем на
+ * minDistance. Когда буфер заполняется, траектория упрощается алгоритмом
+ * Дугласа-Пекера: выкидываются точки, лежащие ближе tolerance к отрезку
+ * между оставшимися соседями. Если это не освободило хотя бы четверть
+ * буфера, допуск удваивается. Старые точки затираются только если упростить
+ * не получилось совсем.
+ *
+ * Методы синхронизированы: точки добавляет поток модели, а рисует EDT.
+ */
+public class Trajectory {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private final double minDistance;
+    private final double initialTolerance;
+
+    private final double[] xs;
+    private final double[] ys;
+    private int head;
+    private int size;
+    private double tolerance;
+
+    private final double[] linearX;
+    private final double[] linearY;
+    private final boolean[] keep;
+    private final int[] stack;
+
+    public Trajectory() {
+        this(DEFAULT_CAPACITY, 1, 0.5);
+    }
+
+    public Trajectory(int capacity, double minDistance, double tolerance) {
+        if (capacity < 4) {
+            throw new IllegalArgumentException("capacity must be at least 4: " + capacity);
+        }
+        this.capacity = capacity;
+        this.minDistance = minDistance;
+        initialTolerance = tolerance;
+        this.tolerance = tolerance;
+        xs = new double[capacity];
+        ys = new double[capacity];
+        linearX = new double[capacity];
+        linearY = new double[capacity];
+        keep = new boolean[capacity];
+        stack = new int[2 * capacity];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+        tolerance = initialTolerance;
+    }
+
+    public synchronized void add(double x, double y) {
+        if (size > 0) {
+            int last = (head + size - 1) % capacity;
+            double diffX = x - xs[last];
+            double diffY = y - ys[last];
+            if (diffX * diffX + diffY * diffY <= minDistance * minDistance) {
+                return;
+            }
+        }
+        if (size == capacity) {
+            decimate();
+        }
+        if (size == capacity) {
+            head = (head + 1) % capacity;
+            size--;
+        }
+        int index = (head + size) % capacity;
+        xs[index] = x;
+        ys[index] = y;
+        size++;
+    }
+
+    /**
+     * Заменяет содержимое path ломаной по точкам траектории.
+     */
+    public synchronized void toPath(Path2D.Double path) {
+        path.reset();
+        for (int i = 0; i < size; ++i) {
+            int index = (head + i) % capacity;
+            if (i == 0) {
+                path.moveTo(xs[index], ys[index]);
+            } else {
+                path.lineTo(xs[index], ys[index]);
+            }
+        }
+    }
+
+    private void decimate() {
+        for (int i = 0; i < size; ++i) {
+            int index = (head + i) % capacity;
+            linearX[i] = xs[index];
+            linearY[i] = ys[index];
+        }
+        int kept = size;
+        for (int attempt = 0; attempt < 16 && kept > capacity * 3 / 4; ++attempt) {
+            kept = simplify(size, tolerance);
+            if (kept > capacity * 3 / 4) {
+                tolerance *= 2;
+            }
+        }
+        int count = 0;
+        for (int i = 0; i < size; ++i) {
+            if (keep[i]) {
+                xs[count] = linearX[i];
+                ys[count] = linearY[i];
+                count++;
+            }
+        }
+        head = 0;
+        size = count;
+    }
+
+    /**
+     * Дуглас-Пекер без рекурсии по linearX/linearY[0, n): отмечает в keep
+     * оставляемые точки и возвращает их количество.
+     */
+    private int simplify(int n, double epsilon) {
+        for (int i = 0; i < n; ++i) {
+            keep[i] = false;
+        }
+        keep[0] = true;
+        keep[n - 1] = true;
+        int kept = 2;
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        double epsilon2 = epsilon * epsilon;
+        while (top > 0) {
+            int to = stack[--top];
+            int from = stack[--top];
+            double ax = linearX[from];
+            double ay = linearY[from];
+            double dx = linearX[to] - ax;
+            double dy = linearY[to] - ay;
+            double length2 = dx * dx + dy * dy;
+            int farthest = -1;
+            double farthestDistance2 = epsilon2;
+            for (int i = from + 1; i < to; ++i) {
+                double px = linearX[i] - ax;
+                double py = linearY[i] - ay;
+                double distance2;
+                if (length2 == 0) {
+                    distance2 = px * px + py * py;
+                } else {
+                    double cross = px * dy - py * dx;
+                    distance2 = cross * cross / length2;
+                }
+                if (distance2 > farthestDistance2) {
+                    farthestDistance2 = distance2;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                kept++;
+                stack[top++] = from;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = to;
+            }
+        }
+        return kept;
+    }
+}
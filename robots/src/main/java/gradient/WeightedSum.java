@@ -0,0 +1,81 @@
+package gradient;
+
+import java.awt.geom.Point2D;
+
+public class WeightedSum implements GradientFunction {
+
+    private final double[] weights;
+    private final GradientFunction[] terms;
+
+    public WeightedSum(double[] weights, GradientFunction[] terms) {
+        if (weights.length != terms.length || terms.length == 0) {
+            throw new IllegalArgumentException("need the same non-zero number of weights and terms");
+        }
+        this.weights = weights.clone();
+        this.terms = terms.clone();
+    }
+
+    @Override
+    public double forward(double x, double y) {
+        double sum = 0;
+        for (int t = 0; t < terms.length; ++t) {
+            sum += weights[t] * terms[t].forward(x, y);
+        }
+        return sum;
+    }
+
+    @Override
+    public Point2D.Double backward(double x, double y) {
+        Point2D.Double result = new Point2D.Double();
+        for (int t = 0; t < terms.length; ++t) {
+            Point2D.Double grad = terms[t].backward(x, y);
+            result.x += weights[t] * grad.x;
+            result.y += weights[t] * grad.y;
+        }
+        return result;
+    }
+
+    @Override
+    public void forwardRow(double startX, double stepX, double y,
+                           double[] values, int offset, int count) {
+        double[] scratch = Scratch.acquire(count);
+        try {
+            for (int k = 0; k < count; ++k) {
+                values[offset + k] = 0;
+            }
+            for (int t = 0; t < terms.length; ++t) {
+                double weight = weights[t];
+                terms[t].forwardRow(startX, stepX, y, scratch, 0, count);
+                for (int k = 0; k < count; ++k) {
+                    values[offset + k] += weight * scratch[k];
+                }
+            }
+        } finally {
+            Scratch.release();
+        }
+    }
+
+    @Override
+    public void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                         int offset, int count) {
+        double[] termX = Scratch.acquire(offset + count);
+        double[] termY = Scratch.acquire(offset + count);
+        try {
+            for (int i = offset; i < offset + count; ++i) {
+                gradX[i] = 0;
+                gradY[i] = 0;
+            }
+            for (int t = 0; t < terms.length; ++t) {
+                double weight = weights[t];
+                terms[t].backward(xs, ys, termX, termY, offset, count);
+                for (int i = offset; i < offset + count; ++i) {
+                    gradX[i] += weight * termX[i];
+                    gradY[i] += weight * termY[i];
+                }
+            }
+        } finally {
+            Scratch.release();
+            Scratch.release();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package gradient.expr;
+
+import java.awt.geom.Point2D;
+
+import gradient.GradientFunction;
+
+/**
+ * Функция, скомпилированная из выражения. Значения на строках и массивах
+ * точек считаются блоками по BLOCK точек, градиент - прямым режимом
+ * автоматического дифференцирования. Временные буферы свои у каждого
+ * потока, поэтому функцию можно считать параллельно.
+ */
+public class CompiledFunction implements GradientFunction {
+
+    private static final int BLOCK = 256;
+
+    private final String source;
+    private final Node root;
+    private final int slots;
+    private final ThreadLocal<double[]> duals;
+    private final ThreadLocal<double[][]> blocks;
+
+    CompiledFunction(String source, Node root) {
+        this.source = source;
+        this.root = root;
+        slots = root.assignSlots(0);
+        duals = ThreadLocal.withInitial(() -> new double[3 * slots]);
+        // два последних буфера - координаты x и y текущего блока
+        blocks = ThreadLocal.withInitial(() -> new double[slots + 2][BLOCK]);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public double forward(double x, double y) {
+        return root.value(x, y);
+    }
+
+    @Override
+    public Point2D.Double backward(double x, double y) {
+        double[] d = duals.get();
+        root.dual(x, y, d);
+        int i = 3 * root.slot;
+        return new Point2D.Double(d[i + 1], d[i + 2]);
+    }
+
+    @Override
+    public void forward(double[] xs, double[] ys, double[] values, int offset, int count) {
+        double[][] buffers = blocks.get();
+        double[] blockX = buffers[slots];
+        double[] blockY = buffers[slots + 1];
+        double[] result = buffers[root.slot];
+        for (int from = offset; from < offset + count; from += BLOCK) {
+            int n = Math.min(BLOCK, offset + count - from);
+            System.arraycopy(xs, from, blockX, 0, n);
+            System.arraycopy(ys, from, blockY, 0, n);
+            root.block(blockX, blockY, buffers, n);
+            System.arraycopy(result, 0, values, from, n);
+        }
+    }
+
+    @Override
+    public void forwardRow(double startX, double stepX, double y,
+                           double[] values, int offset, int count) {
+        double[][] buffers = blocks.get();
+        double[] blockX = buffers[slots];
+        double[] blockY = buffers[slots + 1];
+        double[] result = buffers[root.slot];
+        for (int k = 0; k < BLOCK; ++k) {
+            blockY[k] = y;
+        }
+        for (int from = 0; from < count; from += BLOCK) {
+            int n = Math.min(BLOCK, count - from);
+            for (int k = 0; k < n; ++k) {
+                blockX[k] = startX + (from + k) * stepX;
+            }
+            root.block(blockX, blockY, buffers, n);
+            System.arraycopy(result, 0, values, offset + from, n);
+        }
+    }
+
+    @Override
+    public void backward(double[] xs, double[] ys, double[] gradX, double[] gradY,
+                         int offset, int count) {
+        double[] d = duals.get();
+        int i = 3 * root.slot;
+        for (int k = offset; k < offset + count; ++k) {
+            root.dual(xs[k], ys[k], d);
+            gradX[k] = d[i + 1];
+            gradY[k] = d[i + 2];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
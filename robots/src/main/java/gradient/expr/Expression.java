@@ -0,0 +1,18 @@
+package gradient.expr;
+
+/**
+ * Точка входа в язык выражений, например
+ * Expression.compile("rosenbrock(1, 100) + 0.5 * gauss(0.5, 0.5, 0.1)").
+ */
+public final class Expression {
+
+    private Expression() {
+    }
+
+    /**
+     * @throws IllegalArgumentException если выражение не разбирается
+     */
+    public static CompiledFunction compile(String source) {
+        return new CompiledFunction(source, new ExpressionParser(source).parse());
+    }
+}
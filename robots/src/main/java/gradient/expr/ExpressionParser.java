@@ -0,0 +1,228 @@
+package gradient.expr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбор выражения рекурсивным спуском.
+ *
+ * expr    := term (('+' | '-') term)*
+ * term    := unary (('*' | '/') unary)*
+ * unary   := '-' unary | power
+ * power   := primary ('^' unary)?
+ * primary := number | 'x' | 'y' | 'pi' | 'e' | name '(' expr (',' expr)* ')' | '(' expr ')'
+ *
+ * Кроме элементарных функций (sqrt, exp, log, sin, cos, abs, min, max, pow)
+ * есть готовые рельефы: gauss(cx, cy, sigma), rosenbrock(a, b), rastrigin(A).
+ * gauss - яма глубины 1, как GaussianWell, а не горб.
+ */
+final class ExpressionParser {
+
+    private final String source;
+    private int position;
+
+    ExpressionParser(String source) {
+        this.source = source;
+    }
+
+    Node parse() {
+        Node result = parseExpression();
+        skipSpaces();
+        if (position != source.length()) {
+            throw error("unexpected '" + source.charAt(position) + "'");
+        }
+        return result;
+    }
+
+    private Node parseExpression() {
+        Node result = parseTerm();
+        while (true) {
+            if (accept('+')) {
+                result = NodeFactory.add(result, parseTerm());
+            } else if (accept('-')) {
+                result = NodeFactory.sub(result, parseTerm());
+            } else {
+                return result;
+            }
+        }
+    }
+
+    private Node parseTerm() {
+        Node result = parseUnary();
+        while (true) {
+            if (accept('*')) {
+                result = NodeFactory.mul(result, parseUnary());
+            } else if (accept('/')) {
+                result = NodeFactory.div(result, parseUnary());
+            } else {
+                return result;
+            }
+        }
+    }
+
+    private Node parseUnary() {
+        if (accept('-')) {
+            return NodeFactory.neg(parseUnary());
+        }
+        return parsePower();
+    }
+
+    private Node parsePower() {
+        Node base = parsePrimary();
+        if (accept('^')) {
+            return NodeFactory.pow(base, parseUnary());
+        }
+        return base;
+    }
+
+    private Node parsePrimary() {
+        skipSpaces();
+        if (accept('(')) {
+            Node inner = parseExpression();
+            expect(')');
+            return inner;
+        }
+        if (position < source.length()
+                && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+            return parseNumber();
+        }
+        String name = parseName();
+        switch (name) {
+            case "x":
+                return new Node.VarX();
+            case "y":
+                return new Node.VarY();
+            case "pi":
+                return NodeFactory.constant(Math.PI);
+            case "e":
+                return NodeFactory.constant(Math.E);
+            default:
+                return parseCall(name);
+        }
+    }
+
+    private Node parseNumber() {
+        int start = position;
+        while (position < source.length()
+                && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+            position++;
+        }
+        if (position < source.length() && (source.charAt(position) == 'e' || source.charAt(position) == 'E')
+                && position + 1 < source.length()
+                && (Character.isDigit(source.charAt(position + 1)) || source.charAt(position + 1) == '-')) {
+            position += 2;
+            while (position < source.length() && Character.isDigit(source.charAt(position))) {
+                position++;
+            }
+        }
+        try {
+            return NodeFactory.constant(Double.parseDouble(source.substring(start, position)));
+        } catch (NumberFormatException e) {
+            position = start;
+            throw error("bad number");
+        }
+    }
+
+    private String parseName() {
+        int start = position;
+        while (position < source.length() && Character.isLetterOrDigit(source.charAt(position))) {
+            position++;
+        }
+        if (start == position) {
+            throw error(position < source.length() ? "unexpected '" + source.charAt(position) + "'"
+                    : "unexpected end of expression");
+        }
+        return source.substring(start, position);
+    }
+
+    private Node parseCall(String name) {
+        int start = position;
+        expect('(');
+        List<Node> args = new ArrayList<>();
+        args.add(parseExpression());
+        while (accept(',')) {
+            args.add(parseExpression());
+        }
+        expect(')');
+
+        if (args.size() == 1) {
+            Node node = NodeFactory.unary(name, args.get(0));
+            if (node != null) {
+                return node;
+            }
+        }
+        switch (name + "/" + args.size()) {
+            case "min/2":
+                return NodeFactory.min(args.get(0), args.get(1));
+            case "max/2":
+                return NodeFactory.max(args.get(0), args.get(1));
+            case "pow/2":
+                return NodeFactory.pow(args.get(0), args.get(1));
+            case "gauss/3":
+                return gauss(args.get(0), args.get(1), args.get(2));
+            case "rosenbrock/2":
+                return rosenbrock(args.get(0), args.get(1));
+            case "rastrigin/1":
+                return rastrigin(args.get(0));
+            default:
+                position = start;
+                throw error("unknown function " + name + " with " + args.size() + " argument(s)");
+        }
+    }
+
+    /** -exp(-((x - cx)^2 + (y - cy)^2) / (2 sigma^2)) */
+    private static Node gauss(Node centerX, Node centerY, Node sigma) {
+        Node two = NodeFactory.constant(2);
+        Node dist2 = NodeFactory.add(
+                NodeFactory.pow(NodeFactory.sub(new Node.VarX(), centerX), two),
+                NodeFactory.pow(NodeFactory.sub(new Node.VarY(), centerY), two));
+        Node denominator = NodeFactory.mul(two, NodeFactory.pow(sigma, two));
+        return NodeFactory.neg(NodeFactory.unary("exp", NodeFactory.neg(NodeFactory.div(dist2, denominator))));
+    }
+
+    /** (a - x)^2 + b (y - x^2)^2 */
+    private static Node rosenbrock(Node a, Node b) {
+        Node two = NodeFactory.constant(2);
+        Node x = new Node.VarX();
+        return NodeFactory.add(
+                NodeFactory.pow(NodeFactory.sub(a, x), two),
+                NodeFactory.mul(b, NodeFactory.pow(
+                        NodeFactory.sub(new Node.VarY(), NodeFactory.pow(new Node.VarX(), two)), two)));
+    }
+
+    /** 2A + x^2 - A cos(2 pi x) + y^2 - A cos(2 pi y) */
+    private static Node rastrigin(Node a) {
+        Node two = NodeFactory.constant(2);
+        Node twoPi = NodeFactory.constant(2 * Math.PI);
+        Node termX = NodeFactory.sub(NodeFactory.pow(new Node.VarX(), two),
+                NodeFactory.mul(a, NodeFactory.unary("cos", NodeFactory.mul(twoPi, new Node.VarX()))));
+        Node termY = NodeFactory.sub(NodeFactory.pow(new Node.VarY(), two),
+                NodeFactory.mul(a, NodeFactory.unary("cos", NodeFactory.mul(twoPi, new Node.VarY()))));
+        return NodeFactory.add(NodeFactory.mul(two, a), NodeFactory.add(termX, termY));
+    }
+
+    private void skipSpaces() {
+        while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+            position++;
+        }
+    }
+
+    private boolean accept(char c) {
+        skipSpaces();
+        if (position < source.length() && source.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!accept(c)) {
+            throw error("expected '" + c + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " in \"" + source + "\"");
+    }
+}
@@ -0,0 +1,621 @@
+package gradient.expr;
+
+/**
+ * Узел скомпилированного выражения от (x, y).
+ *
+ * Каждый узел умеет три вещи:
+ * value - только значение в точке;
+ * dual - значение и обе частные производные (прямой режим автоматического
+ * дифференцирования), результат пишется в d[3 * slot], d[3 * slot + 1],
+ * d[3 * slot + 2];
+ * block - значения сразу для блока точек в buffers[slot], чтобы на каждый
+ * узел приходился один виртуальный вызов на блок, а не на точку.
+ *
+ * Номера слотов раздаёт компилятор после свёртки констант.
+ */
+abstract class Node {
+
+    int slot;
+
+    abstract double value(double x, double y);
+
+    abstract void dual(double x, double y, double[] d);
+
+    abstract void block(double[] xs, double[] ys, double[][] buffers, int n);
+
+    int assignSlots(int next) {
+        slot = next;
+        return next + 1;
+    }
+
+    boolean isConstant() {
+        return false;
+    }
+
+    static final class Const extends Node {
+        final double c;
+
+        Const(double c) {
+            this.c = c;
+        }
+
+        @Override
+        double value(double x, double y) {
+            return c;
+        }
+
+        @Override
+        void dual(double x, double y, double[] d) {
+            int i = 3 * slot;
+            d[i] = c;
+            d[i + 1] = 0;
+            d[i + 2] = 0;
+        }
+
+        @Override
+        void block(double[] xs, double[] ys, double[][] buffers, int n) {
+            double[] out = buffers[slot];
+            for (int k = 0; k < n; ++k) {
+                out[k] = c;
+            }
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    static final class VarX extends Node {
+        @Override
+        double value(double x, double y) {
+            return x;
+        }
+
+        @Override
+        void dual(double x, double y, double[] d) {
+            int i = 3 * slot;
+            d[i] = x;
+            d[i + 1] = 1;
+            d[i + 2] = 0;
+        }
+
+        @Override
+        void block(double[] xs, double[] ys, double[][] buffers, int n) {
+            System.arraycopy(xs, 0, buffers[slot], 0, n);
+        }
+    }
+
+    static final class VarY extends Node {
+        @Override
+        double value(double x, double y) {
+            return y;
+        }
+
+        @Override
+        void dual(double x, double y, double[] d) {
+            int i = 3 * slot;
+            d[i] = y;
+            d[i + 1] = 0;
+            d[i + 2] = 1;
+        }
+
+        @Override
+        void block(double[] xs, double[] ys, double[][] buffers, int n) {
+            System.arraycopy(ys, 0, buffers[slot], 0, n);
+        }
+    }
+
+    /**
+     * Узел с одним аргументом.
+     */
+    abstract static class Unary extends Node {
+        final Node a;
+
+        Unary(Node a) {
+            this.a = a;
+        }
+
+        @Override
+        int assignSlots(int next) {
+            return super.assignSlots(a.assignSlots(next));
+        }
+
+        /** f(v) */
+        abstract double apply(double v);
+
+        /** f'(v); fv = f(v) уже посчитано и передаётся, чтобы не считать дважды */
+        abstract double derivative(double v, double fv);
+
+        abstract void applyBlock(double[] in, double[] out, int n);
+
+        @Override
+        final double value(double x, double y) {
+            return apply(a.value(x, y));
+        }
+
+        @Override
+        final void dual(double x, double y, double[] d) {
+            a.dual(x, y, d);
+            int ia = 3 * a.slot;
+            int i = 3 * slot;
+            double v = d[ia];
+            double fv = apply(v);
+            double df = derivative(v, fv);
+            d[i] = fv;
+            d[i + 1] = df * d[ia + 1];
+            d[i + 2] = df * d[ia + 2];
+        }
+
+        @Override
+        final void block(double[] xs, double[] ys, double[][] buffers, int n) {
+            a.block(xs, ys, buffers, n);
+            applyBlock(buffers[a.slot], buffers[slot], n);
+        }
+    }
+
+    /**
+     * Узел с двумя аргументами.
+     */
+    abstract static class Binary extends Node {
+        final Node a;
+        final Node b;
+
+        Binary(Node a, Node b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        int assignSlots(int next) {
+            return super.assignSlots(b.assignSlots(a.assignSlots(next)));
+        }
+
+        @Override
+        final void dual(double x, double y, double[] d) {
+            a.dual(x, y, d);
+            b.dual(x, y, d);
+            combine(d, 3 * a.slot, 3 * b.slot, 3 * slot);
+        }
+
+        abstract void combine(double[] d, int ia, int ib, int i);
+
+        @Override
+        final void block(double[] xs, double[] ys, double[][] buffers, int n) {
+            a.block(xs, ys, buffers, n);
+            b.block(xs, ys, buffers, n);
+            combineBlock(buffers[a.slot], buffers[b.slot], buffers[slot], n);
+        }
+
+        abstract void combineBlock(double[] va, double[] vb, double[] out, int n);
+    }
+
+    static final class Add extends Binary {
+        Add(Node a, Node b) {
+            super(a, b);
+        }
+
+        @Override
+        double value(double x, double y) {
+            return a.value(x, y) + b.value(x, y);
+        }
+
+        @Override
+        void combine(double[] d, int ia, int ib, int i) {
+            d[i] = d[ia] + d[ib];
+            d[i + 1] = d[ia + 1] + d[ib + 1];
+            d[i + 2] = d[ia + 2] + d[ib + 2];
+        }
+
+        @Override
+        void combineBlock(double[] va, double[] vb, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = va[k] + vb[k];
+            }
+        }
+    }
+
+    static final class Sub extends Binary {
+        Sub(Node a, Node b) {
+            super(a, b);
+        }
+
+        @Override
+        double value(double x, double y) {
+            return a.value(x, y) - b.value(x, y);
+        }
+
+        @Override
+        void combine(double[] d, int ia, int ib, int i) {
+            d[i] = d[ia] - d[ib];
+            d[i + 1] = d[ia + 1] - d[ib + 1];
+            d[i + 2] = d[ia + 2] - d[ib + 2];
+        }
+
+        @Override
+        void combineBlock(double[] va, double[] vb, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = va[k] - vb[k];
+            }
+        }
+    }
+
+    static final class Mul extends Binary {
+        Mul(Node a, Node b) {
+            super(a, b);
+        }
+
+        @Override
+        double value(double x, double y) {
+            return a.value(x, y) * b.value(x, y);
+        }
+
+        @Override
+        void combine(double[] d, int ia, int ib, int i) {
+            double va = d[ia];
+            double vb = d[ib];
+            d[i] = va * vb;
+            d[i + 1] = d[ia + 1] * vb + va * d[ib + 1];
+            d[i + 2] = d[ia + 2] * vb + va * d[ib + 2];
+        }
+
+        @Override
+        void combineBlock(double[] va, double[] vb, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = va[k] * vb[k];
+            }
+        }
+    }
+
+    static final class Div extends Binary {
+        Div(Node a, Node b) {
+            super(a, b);
+        }
+
+        @Override
+        double value(double x, double y) {
+            return a.value(x, y) / b.value(x, y);
+        }
+
+        @Override
+        void combine(double[] d, int ia, int ib, int i) {
+            double va = d[ia];
+            double vb = d[ib];
+            double v = va / vb;
+            d[i] = v;
+            d[i + 1] = (d[ia + 1] - v * d[ib + 1]) / vb;
+            d[i + 2] = (d[ia + 2] - v * d[ib + 2]) / vb;
+        }
+
+        @Override
+        void combineBlock(double[] va, double[] vb, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = va[k] / vb[k];
+            }
+        }
+    }
+
+    /** a ^ b для произвольных a и b */
+    static final class Pow extends Binary {
+        Pow(Node a, Node b) {
+            super(a, b);
+        }
+
+        @Override
+        double value(double x, double y) {
+            return Math.pow(a.value(x, y), b.value(x, y));
+        }
+
+        @Override
+        void combine(double[] d, int ia, int ib, int i) {
+            double va = d[ia];
+            double vb = d[ib];
+            double v = Math.pow(va, vb);
+            double logA = Math.log(va);
+            d[i] = v;
+            d[i + 1] = v * (d[ib + 1] * logA + vb * d[ia + 1] / va);
+            d[i + 2] = v * (d[ib + 2] * logA + vb * d[ia + 2] / va);
+        }
+
+        @Override
+        void combineBlock(double[] va, double[] vb, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = Math.pow(va[k], vb[k]);
+            }
+        }
+    }
+
+    static final class Min extends Binary {
+        Min(Node a, Node b) {
+            super(a, b);
+        }
+
+        @Override
+        double value(double x, double y) {
+            return Math.min(a.value(x, y), b.value(x, y));
+        }
+
+        @Override
+        void combine(double[] d, int ia, int ib, int i) {
+            int from = d[ia] <= d[ib] ? ia : ib;
+            d[i] = d[from];
+            d[i + 1] = d[from + 1];
+            d[i + 2] = d[from + 2];
+        }
+
+        @Override
+        void combineBlock(double[] va, double[] vb, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = Math.min(va[k], vb[k]);
+            }
+        }
+    }
+
+    static final class Max extends Binary {
+        Max(Node a, Node b) {
+            super(a, b);
+        }
+
+        @Override
+        double value(double x, double y) {
+            return Math.max(a.value(x, y), b.value(x, y));
+        }
+
+        @Override
+        void combine(double[] d, int ia, int ib, int i) {
+            int from = d[ia] >= d[ib] ? ia : ib;
+            d[i] = d[from];
+            d[i + 1] = d[from + 1];
+            d[i + 2] = d[from + 2];
+        }
+
+        @Override
+        void combineBlock(double[] va, double[] vb, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = Math.max(va[k], vb[k]);
+            }
+        }
+    }
+
+    /** c * a: умножение на константу без отдельного узла-константы */
+    static final class Scale extends Unary {
+        final double c;
+
+        Scale(double c, Node a) {
+            super(a);
+            this.c = c;
+        }
+
+        @Override
+        double apply(double v) {
+            return c * v;
+        }
+
+        @Override
+        double derivative(double v, double fv) {
+            return c;
+        }
+
+        @Override
+        void applyBlock(double[] in, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = c * in[k];
+            }
+        }
+    }
+
+    /** a + c */
+    static final class Offset extends Unary {
+        final double c;
+
+        Offset(Node a, double c) {
+            super(a);
+            this.c = c;
+        }
+
+        @Override
+        double apply(double v) {
+            return v + c;
+        }
+
+        @Override
+        double derivative(double v, double fv) {
+            return 1;
+        }
+
+        @Override
+        void applyBlock(double[] in, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = in[k] + c;
+            }
+        }
+    }
+
+    static final class Square extends Unary {
+        Square(Node a) {
+            super(a);
+        }
+
+        @Override
+        double apply(double v) {
+            return v * v;
+        }
+
+        @Override
+        double derivative(double v, double fv) {
+            return 2 * v;
+        }
+
+        @Override
+        void applyBlock(double[] in, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = in[k] * in[k];
+            }
+        }
+    }
+
+    /** a ^ p для постоянного p */
+    static final class PowConst extends Unary {
+        final double p;
+
+        PowConst(Node a, double p) {
+            super(a);
+            this.p = p;
+        }
+
+        @Override
+        double apply(double v) {
+            return Math.pow(v, p);
+        }
+
+        @Override
+        double derivative(double v, double fv) {
+            return p * Math.pow(v, p - 1);
+        }
+
+        @Override
+        void applyBlock(double[] in, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = Math.pow(in[k], p);
+            }
+        }
+    }
+
+    static final class Sqrt extends Unary {
+        Sqrt(Node a) {
+            super(a);
+        }
+
+        @Override
+        double apply(double v) {
+            return Math.sqrt(v);
+        }
+
+        @Override
+        double derivative(double v, double fv) {
+            return 0.5 / fv;
+        }
+
+        @Override
+        void applyBlock(double[] in, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = Math.sqrt(in[k]);
+            }
+        }
+    }
+
+    static final class Exp extends Unary {
+        Exp(Node a) {
+            super(a);
+        }
+
+        @Override
+        double apply(double v) {
+            return Math.exp(v);
+        }
+
+        @Override
+        double derivative(double v, double fv) {
+            return fv;
+        }
+
+        @Override
+        void applyBlock(double[] in, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = Math.exp(in[k]);
+            }
+        }
+    }
+
+    static final class Log extends Unary {
+        Log(Node a) {
+            super(a);
+        }
+
+        @Override
+        double apply(double v) {
+            return Math.log(v);
+        }
+
+        @Override
+        double derivative(double v, double fv) {
+            return 1 / v;
+        }
+
+        @Override
+        void applyBlock(double[] in, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = Math.log(in[k]);
+            }
+        }
+    }
+
+    static final class Sin extends Unary {
+        Sin(Node a) {
+            super(a);
+        }
+
+        @Override
+        double apply(double v) {
+            return Math.sin(v);
+        }
+
+        @Override
+        double derivative(double v, double fv) {
+            return Math.cos(v);
+        }
+
+        @Override
+        void applyBlock(double[] in, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = Math.sin(in[k]);
+            }
+        }
+    }
+
+    static final class Cos extends Unary {
+        Cos(Node a) {
+            super(a);
+        }
+
+        @Override
+        double apply(double v) {
+            return Math.cos(v);
+        }
+
+        @Override
+        double derivative(double v, double fv) {
+            return -Math.sin(v);
+        }
+
+        @Override
+        void applyBlock(double[] in, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = Math.cos(in[k]);
+            }
+        }
+    }
+
+    static final class Abs extends Unary {
+        Abs(Node a) {
+            super(a);
+        }
+
+        @Override
+        double apply(double v) {
+            return Math.abs(v);
+        }
+
+        @Override
+        double derivative(double v, double fv) {
+            return v < 0 ? -1 : 1;
+        }
+
+        @Override
+        void applyBlock(double[] in, double[] out, int n) {
+            for (int k = 0; k < n; ++k) {
+                out[k] = Math.abs(in[k]);
+            }
+        }
+    }
+}
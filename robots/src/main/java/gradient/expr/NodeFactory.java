@@ -0,0 +1,147 @@
+package gradient.expr;
+
+/**
+ * Создаёт узлы, сразу сворачивая константы и подставляя специализированные
+ * узлы: x + 3 становится Offset, 2 * x - Scale, x ^ 2 - Square.
+ */
+final class NodeFactory {
+
+    private NodeFactory() {
+    }
+
+    static Node constant(double c) {
+        return new Node.Const(c);
+    }
+
+    private static double valueOf(Node node) {
+        return ((Node.Const) node).c;
+    }
+
+    static Node add(Node a, Node b) {
+        if (a.isConstant() && b.isConstant()) {
+            return constant(valueOf(a) + valueOf(b));
+        }
+        if (a.isConstant()) {
+            return valueOf(a) == 0 ? b : new Node.Offset(b, valueOf(a));
+        }
+        if (b.isConstant()) {
+            return valueOf(b) == 0 ? a : new Node.Offset(a, valueOf(b));
+        }
+        return new Node.Add(a, b);
+    }
+
+    static Node sub(Node a, Node b) {
+        if (b.isConstant()) {
+            return add(a, constant(-valueOf(b)));
+        }
+        if (a.isConstant()) {
+            return add(neg(b), a);
+        }
+        return new Node.Sub(a, b);
+    }
+
+    static Node mul(Node a, Node b) {
+        if (a.isConstant() && b.isConstant()) {
+            return constant(valueOf(a) * valueOf(b));
+        }
+        if (b.isConstant()) {
+            return mul(b, a);
+        }
+        if (a.isConstant()) {
+            double c = valueOf(a);
+            if (c == 1) {
+                return b;
+            }
+            if (b instanceof Node.Scale) {
+                Node.Scale scale = (Node.Scale) b;
+                return new Node.Scale(c * scale.c, scale.a);
+            }
+            return new Node.Scale(c, b);
+        }
+        return new Node.Mul(a, b);
+    }
+
+    static Node div(Node a, Node b) {
+        if (b.isConstant()) {
+            return mul(constant(1 / valueOf(b)), a);
+        }
+        if (a.isConstant() && valueOf(a) == 0) {
+            return a;
+        }
+        return new Node.Div(a, b);
+    }
+
+    static Node neg(Node a) {
+        return mul(constant(-1), a);
+    }
+
+    static Node pow(Node a, Node b) {
+        if (a.isConstant() && b.isConstant()) {
+            return constant(Math.pow(valueOf(a), valueOf(b)));
+        }
+        if (b.isConstant()) {
+            double p = valueOf(b);
+            if (p == 0) {
+                return constant(1);
+            }
+            if (p == 1) {
+                return a;
+            }
+            if (p == 2) {
+                return new Node.Square(a);
+            }
+            if (p == 0.5) {
+                return new Node.Sqrt(a);
+            }
+            return new Node.PowConst(a, p);
+        }
+        return new Node.Pow(a, b);
+    }
+
+    static Node min(Node a, Node b) {
+        if (a.isConstant() && b.isConstant()) {
+            return constant(Math.min(valueOf(a), valueOf(b)));
+        }
+        return new Node.Min(a, b);
+    }
+
+    static Node max(Node a, Node b) {
+        if (a.isConstant() && b.isConstant()) {
+            return constant(Math.max(valueOf(a), valueOf(b)));
+        }
+        return new Node.Max(a, b);
+    }
+
+    /**
+     * Функция одного аргумента по имени, или null, если такой нет.
+     */
+    static Node unary(String name, Node a) {
+        Node node;
+        switch (name) {
+            case "sqrt":
+                node = new Node.Sqrt(a);
+                break;
+            case "exp":
+                node = new Node.Exp(a);
+                break;
+            case "log":
+                node = new Node.Log(a);
+                break;
+            case "sin":
+                node = new Node.Sin(a);
+                break;
+            case "cos":
+                node = new Node.Cos(a);
+                break;
+            case "abs":
+                node = new Node.Abs(a);
+                break;
+            default:
+                return null;
+        }
+        if (a.isConstant()) {
+            return constant(node.value(0, 0));
+        }
+        return node;
+    }
+}
@@ -0,0 +1,40 @@
+package gradient.optimizer;
+
+import gradient.GradientFunction;
+
+/**
+ * Общая часть оптимизаторов: градиент в точке через пакетный
+ * GradientFunction.backward без создания Point2D.
+ */
+abstract class AbstractOptimizer implements Optimizer {
+
+    private final double[] pointX = new double[1];
+    private final double[] pointY = new double[1];
+    private final double[] gradX = new double[1];
+    private final double[] gradY = new double[1];
+
+    protected final double rate;
+
+    protected AbstractOptimizer(double rate) {
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("rate must be positive: " + rate);
+        }
+        this.rate = rate;
+    }
+
+    /**
+     * Градиент в (x, y): результат в grad[0], grad[1], возвращается его норма.
+     */
+    protected double gradient(GradientFunction function, double x, double y, double[] grad) {
+        pointX[0] = x;
+        pointY[0] = y;
+        function.backward(pointX, pointY, gradX, gradY, 0, 1);
+        grad[0] = gradX[0];
+        grad[1] = gradY[0];
+        return Math.sqrt(grad[0] * grad[0] + grad[1] * grad[1]);
+    }
+
+    @Override
+    public void reset() {
+    }
+}
@@ -0,0 +1,58 @@
+package gradient.optimizer;
+
+import gradient.GradientFunction;
+
+/**
+ * Adam: инерция по первому моменту и масштаб по второму, с поправкой на
+ * смещение нулевых начальных значений.
+ */
+public class Adam extends AbstractOptimizer {
+
+    private final double beta1;
+    private final double beta2;
+    private final double epsilon;
+    private final double[] grad = new double[2];
+    private double firstX;
+    private double firstY;
+    private double secondX;
+    private double secondY;
+    private double beta1Power = 1;
+    private double beta2Power = 1;
+
+    public Adam(double rate) {
+        this(rate, 0.9, 0.999, 1e-8);
+    }
+
+    public Adam(double rate, double beta1, double beta2, double epsilon) {
+        super(rate);
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public double step(GradientFunction function, double[] position) {
+        double norm = gradient(function, position[0], position[1], grad);
+        firstX = beta1 * firstX + (1 - beta1) * grad[0];
+        firstY = beta1 * firstY + (1 - beta1) * grad[1];
+        secondX = beta2 * secondX + (1 - beta2) * grad[0] * grad[0];
+        secondY = beta2 * secondY + (1 - beta2) * grad[1] * grad[1];
+        beta1Power *= beta1;
+        beta2Power *= beta2;
+        double correction1 = 1 - beta1Power;
+        double correction2 = 1 - beta2Power;
+        position[0] -= rate * (firstX / correction1) / (Math.sqrt(secondX / correction2) + epsilon);
+        position[1] -= rate * (firstY / correction1) / (Math.sqrt(secondY / correction2) + epsilon);
+        return norm;
+    }
+
+    @Override
+    public void reset() {
+        firstX = 0;
+        firstY = 0;
+        secondX = 0;
+        secondY = 0;
+        beta1Power = 1;
+        beta2Power = 1;
+    }
+}
@@ -0,0 +1,51 @@
+package gradient.optimizer;
+
+import gradient.GradientFunction;
+
+/**
+ * Спуск с подбором шага по условию Армихо: начиная с rate, шаг уменьшается
+ * в shrink раз, пока значение функции не упадёт хотя бы на
+ * c * шаг * |grad|^2.
+ */
+public class BacktrackingLineSearch extends AbstractOptimizer {
+
+    private static final int MAX_HALVINGS = 50;
+
+    private final double shrink;
+    private final double armijo;
+    private final double[] grad = new double[2];
+
+    public BacktrackingLineSearch(double rate) {
+        this(rate, 0.5, 1e-4);
+    }
+
+    public BacktrackingLineSearch(double rate, double shrink, double armijo) {
+        super(rate);
+        if (!(shrink > 0 && shrink < 1)) {
+            throw new IllegalArgumentException("shrink must be in (0, 1): " + shrink);
+        }
+        this.shrink = shrink;
+        this.armijo = armijo;
+    }
+
+    @Override
+    public double step(GradientFunction function, double[] position) {
+        double x = position[0];
+        double y = position[1];
+        double norm = gradient(function, x, y, grad);
+        double value = function.forward(x, y);
+        double decrease = armijo * norm * norm;
+        double step = rate;
+        for (int i = 0; i < MAX_HALVINGS; ++i) {
+            double newX = x - step * grad[0];
+            double newY = y - step * grad[1];
+            if (function.forward(newX, newY) <= value - step * decrease) {
+                position[0] = newX;
+                position[1] = newY;
+                return norm;
+            }
+            step *= shrink;
+        }
+        return norm;
+    }
+}
@@ -0,0 +1,23 @@
+package gradient.optimizer;
+
+import gradient.GradientFunction;
+
+/**
+ * Обычный градиентный спуск: x -= grad * rate.
+ */
+public class GradientDescent extends AbstractOptimizer {
+
+    private final double[] grad = new double[2];
+
+    public GradientDescent(double rate) {
+        super(rate);
+    }
+
+    @Override
+    public double step(GradientFunction function, double[] position) {
+        double norm = gradient(function, position[0], position[1], grad);
+        position[0] -= grad[0] * rate;
+        position[1] -= grad[1] * rate;
+        return norm;
+    }
+}
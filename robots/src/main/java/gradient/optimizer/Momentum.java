@@ -0,0 +1,35 @@
+package gradient.optimizer;
+
+import gradient.GradientFunction;
+
+/**
+ * Спуск с инерцией: v = beta * v + grad, x -= rate * v.
+ */
+public class Momentum extends AbstractOptimizer {
+
+    private final double beta;
+    private final double[] grad = new double[2];
+    private double velocityX;
+    private double velocityY;
+
+    public Momentum(double rate, double beta) {
+        super(rate);
+        this.beta = beta;
+    }
+
+    @Override
+    public double step(GradientFunction function, double[] position) {
+        double norm = gradient(function, position[0], position[1], grad);
+        velocityX = beta * velocityX + grad[0];
+        velocityY = beta * velocityY + grad[1];
+        position[0] -= rate * velocityX;
+        position[1] -= rate * velocityY;
+        return norm;
+    }
+
+    @Override
+    public void reset() {
+        velocityX = 0;
+        velocityY = 0;
+    }
+}
@@ -0,0 +1,37 @@
+package gradient.optimizer;
+
+import gradient.GradientFunction;
+
+/**
+ * Инерция Нестерова: градиент берётся в точке, куда унесёт текущая скорость.
+ */
+public class Nesterov extends AbstractOptimizer {
+
+    private final double beta;
+    private final double[] grad = new double[2];
+    private double velocityX;
+    private double velocityY;
+
+    public Nesterov(double rate, double beta) {
+        super(rate);
+        this.beta = beta;
+    }
+
+    @Override
+    public double step(GradientFunction function, double[] position) {
+        double norm = gradient(function, position[0], position[1], grad);
+        gradient(function, position[0] - rate * beta * velocityX,
+                position[1] - rate * beta * velocityY, grad);
+        velocityX = beta * velocityX + grad[0];
+        velocityY = beta * velocityY + grad[1];
+        position[0] -= rate * velocityX;
+        position[1] -= rate * velocityY;
+        return norm;
+    }
+
+    @Override
+    public void reset() {
+        velocityX = 0;
+        velocityY = 0;
+    }
+}
@@ -0,0 +1,20 @@
+package gradient.optimizer;
+
+import gradient.GradientFunction;
+
+/**
+ * Шаг оптимизации для одного агента. Оптимизатор хранит своё состояние
+ * (скорость, моменты), поэтому на каждого агента нужен свой экземпляр.
+ */
+public interface Optimizer {
+    /**
+     * Сдвигает position = {x, y} на один шаг на месте.
+     * @return норма градиента в точке до шага
+     */
+    public double step(GradientFunction function, double[] position);
+
+    /**
+     * Сбрасывает накопленное состояние, например при новой стартовой точке.
+     */
+    public void reset();
+}
@@ -0,0 +1,31 @@
+package gradient.optimizer;
+
+/**
+ * Алгоритмы спуска для выбора в интерфейсе. Адаптивным (RMSProp, Adam)
+ * rate задаёт длину шага напрямую, остальным - множитель градиента.
+ */
+public enum OptimizerKind {
+    GradientDescent,
+    Momentum,
+    Nesterov,
+    RMSProp,
+    Adam,
+    Backtracking;
+
+    public Optimizer create(double rate) {
+        switch (this) {
+            case Momentum:
+                return new gradient.optimizer.Momentum(rate, 0.9);
+            case Nesterov:
+                return new gradient.optimizer.Nesterov(rate, 0.9);
+            case RMSProp:
+                return new gradient.optimizer.RMSProp(rate, 0.9, 1e-8);
+            case Adam:
+                return new gradient.optimizer.Adam(rate);
+            case Backtracking:
+                return new BacktrackingLineSearch(rate);
+            default:
+                return new gradient.optimizer.GradientDescent(rate);
+        }
+    }
+}
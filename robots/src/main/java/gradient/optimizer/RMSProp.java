@@ -0,0 +1,39 @@
+package gradient.optimizer;
+
+import gradient.GradientFunction;
+
+/**
+ * Шаг делится на скользящее среднее квадрата градиента по каждой оси,
+ * поэтому вытянутые поверхности вроде Oval проходятся одинаково быстро
+ * вдоль обеих осей.
+ */
+public class RMSProp extends AbstractOptimizer {
+
+    private final double decay;
+    private final double epsilon;
+    private final double[] grad = new double[2];
+    private double meanSquareX;
+    private double meanSquareY;
+
+    public RMSProp(double rate, double decay, double epsilon) {
+        super(rate);
+        this.decay = decay;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public double step(GradientFunction function, double[] position) {
+        double norm = gradient(function, position[0], position[1], grad);
+        meanSquareX = decay * meanSquareX + (1 - decay) * grad[0] * grad[0];
+        meanSquareY = decay * meanSquareY + (1 - decay) * grad[1] * grad[1];
+        position[0] -= rate * grad[0] / (Math.sqrt(meanSquareX) + epsilon);
+        position[1] -= rate * grad[1] / (Math.sqrt(meanSquareY) + epsilon);
+        return norm;
+    }
+
+    @Override
+    public void reset() {
+        meanSquareX = 0;
+        meanSquareY = 0;
+    }
+}
@@ -0,0 +1,210 @@
+package gui;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Toolkit;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+import model.GameLoop;
+import model.Simulation;
+import model.World;
+import render.RobotSpriteCache;
+
+/**
+ * Игровое поле с активной отрисовкой: модель шагает в GameLoop, а отдельный
+ * поток рисует кадры в ускоренный задний буфер BufferStrategy, минуя
+ * очередь событий Swing. Роботы рисуются готовыми спрайтами из
+ * RobotSpriteCache.
+ */
+public class ActiveGameCanvas extends Canvas
+{
+    private static final int defaultFpsCap = 60;
+
+    private final World m_world = new World(400, 400);
+    private final Simulation m_simulation = new Simulation(m_world);
+
+    private volatile int m_targetPositionX = 150;
+    private volatile int m_targetPositionY = 100;
+
+    private final GameLoop m_gameLoop = new GameLoop("events generator", 10, 5, 1000.0 / defaultFpsCap,
+        this::onModelUpdateEvent, null);
+
+    private final RobotFrame m_frame = new RobotFrame();
+    private RobotSpriteCache m_sprites;
+    private volatile long m_framePeriodNanos = 1_000_000_000L / defaultFpsCap;
+    private volatile boolean m_rendering;
+    private Thread m_renderThread;
+
+    public ActiveGameCanvas()
+    {
+        setBackground(Color.WHITE);
+        setIgnoreRepaint(true);
+        addMouseListener(new MouseAdapter()
+        {
+            @Override
+            public void mouseClicked(MouseEvent e)
+            {
+                setTargetPosition(e.getPoint());
+            }
+        });
+        addComponentListener(new ComponentAdapter()
+        {
+            @Override
+            public void componentResized(ComponentEvent e)
+            {
+                if (getWidth() > 0 && getHeight() > 0)
+                {
+                    m_world.setSize(getWidth(), getHeight());
+                }
+            }
+        });
+        m_simulation.setCollisionsEnabled(true);
+        m_simulation.addRobot(100, 100, 0);
+        m_simulation.setTarget(m_targetPositionX, m_targetPositionY);
+    }
+
+    public Simulation getSimulation()
+    {
+        return m_simulation;
+    }
+
+    public void setFpsCap(int fps)
+    {
+        if (fps <= 0)
+        {
+            throw new IllegalArgumentException("fps must be positive: " + fps);
+        }
+        m_framePeriodNanos = 1_000_000_000L / fps;
+    }
+
+    protected void setTargetPosition(Point p)
+    {
+        m_targetPositionX = p.x;
+        m_targetPositionY = p.y;
+        m_simulation.setTarget(p.x, p.y);
+    }
+
+    protected void onModelUpdateEvent(double duration)
+    {
+        m_simulation.tick(duration);
+    }
+
+    @Override
+    public void addNotify()
+    {
+        super.addNotify();
+        createBufferStrategy(2);
+        m_sprites = new RobotSpriteCache(RobotSpriteCache.defaultBuckets, getGraphicsConfiguration());
+        m_rendering = true;
+        m_renderThread = new Thread(this::renderLoop, "robots renderer");
+        m_renderThread.setDaemon(true);
+        m_renderThread.start();
+        m_gameLoop.start();
+    }
+
+    @Override
+    public void removeNotify()
+    {
+        // модель шагает, только пока холст на экране: снятый холст не
+        // должен держать поток цикла и крутить симуляцию впустую
+        m_gameLoop.stop();
+        m_rendering = false;
+        Thread renderThread = m_renderThread;
+        m_renderThread = null;
+        if (renderThread != null)
+        {
+            LockSupport.unpark(renderThread);
+            try
+            {
+                renderThread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        super.removeNotify();
+    }
+
+    @Override
+    public void paint(Graphics g)
+    {
+        // кадры рисует поток отрисовки
+    }
+
+    private void renderLoop()
+    {
+        long nextFrame = System.nanoTime();
+        while (m_rendering)
+        {
+            if (getWidth() > 0 && getHeight() > 0)
+            {
+                renderFrame();
+            }
+            long framePeriod = m_framePeriodNanos;
+            nextFrame += framePeriod;
+            long delay = nextFrame - System.nanoTime();
+            if (delay > 0)
+            {
+                LockSupport.parkNanos(this, delay);
+            }
+            else
+            {
+                nextFrame = System.nanoTime();
+            }
+        }
+    }
+
+    private void renderFrame()
+    {
+        BufferStrategy strategy = getBufferStrategy();
+        if (strategy == null)
+        {
+            return;
+        }
+        m_frame.capture(m_simulation.getRobots(), m_gameLoop.getInterpolation(),
+            m_world.getWidth(), m_world.getHeight(), m_targetPositionX, m_targetPositionY);
+        do
+        {
+            do
+            {
+                Graphics2D g = (Graphics2D)strategy.getDrawGraphics();
+                try
+                {
+                    drawFrame(g);
+                }
+                finally
+                {
+                    g.dispose();
+                }
+            }
+            while (strategy.contentsRestored());
+            strategy.show();
+        }
+        while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    private void drawFrame(Graphics2D g)
+    {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        RobotFrame frame = m_frame;
+        for (int i = 0; i < frame.m_count; ++i)
+        {
+            m_sprites.drawRobot(g, frame.m_x[i], frame.m_y[i], frame.m_direction[i]);
+        }
+        g.setColor(Color.GREEN);
+        g.fillOval(frame.m_targetX - 2, frame.m_targetY - 2, 5, 5);
+        g.setColor(Color.BLACK);
+        g.drawOval(frame.m_targetX - 2, frame.m_targetY - 2, 5, 5);
+    }
+}
@@ -0,0 +1,42 @@
+package gui;
+
+import java.awt.Rectangle;
+
+/**
+ * Ограничивающий прямоугольник всего, что изменилось с прошлого кадра.
+ * RepaintManager всё равно объединяет области одного компонента в один
+ * прямоугольник, поэтому хранить их по отдельности смысла нет.
+ */
+class DirtyRegion
+{
+    private int m_minX = Integer.MAX_VALUE;
+    private int m_minY = Integer.MAX_VALUE;
+    private int m_maxX = Integer.MIN_VALUE;
+    private int m_maxY = Integer.MIN_VALUE;
+
+    public void add(int centerX, int centerY, int radius)
+    {
+        m_minX = Math.min(m_minX, centerX - radius);
+        m_minY = Math.min(m_minY, centerY - radius);
+        m_maxX = Math.max(m_maxX, centerX + radius);
+        m_maxY = Math.max(m_maxY, centerY + radius);
+    }
+
+    public boolean isEmpty()
+    {
+        return m_minX > m_maxX;
+    }
+
+    public Rectangle toRectangle()
+    {
+        return new Rectangle(m_minX, m_minY, m_maxX - m_minX + 1, m_maxY - m_minY + 1);
+    }
+
+    public void clear()
+    {
+        m_minX = Integer.MAX_VALUE;
+        m_minY = Integer.MAX_VALUE;
+        m_maxX = Integer.MIN_VALUE;
+        m_maxY = Integer.MIN_VALUE;
+    }
+}
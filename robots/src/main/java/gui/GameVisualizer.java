@@ -1,226 +1,330 @@
 package gui;
 
 import java.awt.Color;
-import java.awt.EventQueue;
+import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.geom.AffineTransform;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.function.IntConsumer;
 
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
+import model.FlowFieldGenerator;
+import model.GameLoop;
+import model.ObstacleMap;
+import model.PathService;
+import model.RobotStore;
+import model.Simulation;
+import model.SpatialIndex;
+import model.SpatialIndexKind;
+import model.World;
+import render.RobotSpriteCache;
+
+/**
+ * Кадр собирается в потоке игрового цикла: положения роботов снимаются в
+ * RobotFrame, а перерисовывается только область, где что-то сдвинулось.
+ * Если все роботы стоят в цели, кадры не строятся вовсе.
+ *
+ * Какие роботы попадают в перерисовываемую область и какой робот под
+ * курсором, подсказывает пространственный индекс модели. Индекс строится по
+ * положениям конца тика, а кадр интерполирован, поэтому область запроса
+ * берётся с запасом indexMargin, а точная проверка идёт по кадру.
+ */
 public class GameVisualizer extends JPanel
 {
-    private final Timer m_timer = initTimer();
-    
-    private static Timer initTimer() 
-    {
-        Timer timer = new Timer("events generator", true);
-        return timer;
-    }
-    
-    private volatile double m_robotPositionX = 100;
-    private volatile double m_robotPositionY = 100; 
-    private volatile double m_robotDirection = 0; 
+    private static final int robotRadius = 16;
+    private static final int targetRadius = 4;
+    private static final int defaultFpsCap = 60;
+    private static final int obstacleCellSize = 20;
+    private static final int minObstacleGridSize = 100;
+    private static final int indexMargin = 2 * robotRadius;
+
+    private final World m_world = new World(400, 400);
+    private final Simulation m_simulation = new Simulation(m_world);
+    private final ObstacleMap m_obstacles = createObstacleMap();
 
     private volatile int m_targetPositionX = 150;
     private volatile int m_targetPositionY = 100;
-    
-    private static final double maxVelocity = 0.1; 
-    private static final double maxAngularVelocity = 0.001; 
-    
-    public GameVisualizer() 
+
+    private final GameLoop m_gameLoop = new GameLoop("events generator", 10, 5, 1000.0 / defaultFpsCap,
+        this::onModelUpdateEvent, this::onRedrawEvent);
+
+    private final Object m_frameLock = new Object();
+    private RobotFrame m_frontFrame = new RobotFrame();
+    private RobotFrame m_backFrame = new RobotFrame();
+    private final DirtyRegion m_dirtyRegion = new DirtyRegion();
+    private volatile boolean m_idleFrameShown;
+    private final RobotSpriteCache m_sprites = new RobotSpriteCache();
+
+    // состояние отрисовки для m_paintVisitor; трогается только в paint()
+    private final IntConsumer m_paintVisitor = this::paintIndexedRobot;
+    private Graphics2D m_paintGraphics;
+    private Rectangle m_paintClip;
+    private RobotFrame m_paintFrame;
+    private final int[] m_hit = new int[1];
+
+    public GameVisualizer()
     {
-        m_timer.schedule(new TimerTask()
-        {
-            @Override
-            public void run()
-            {
-                onRedrawEvent();
-            }
-        }, 0, 50);
-        m_timer.schedule(new TimerTask()
+        addMouseListener(new MouseAdapter()
         {
             @Override
-            public void run()
+            public void mouseClicked(MouseEvent e)
             {
-                onModelUpdateEvent();
+                if (SwingUtilities.isRightMouseButton(e))
+                {
+                    toggleObstacle(e.getPoint());
+                }
+                else
+                {
+                    setTargetPosition(e.getPoint());
+                }
             }
-        }, 0, 10);
-        addMouseListener(new MouseAdapter()
+        });
+        addComponentListener(new ComponentAdapter()
         {
             @Override
-            public void mouseClicked(MouseEvent e)
+            public void componentResized(ComponentEvent e)
             {
-                setTargetPosition(e.getPoint());
-                repaint();
+                if (getWidth() > 0 && getHeight() > 0)
+                {
+                    m_world.setSize(getWidth(), getHeight());
+                    m_obstacles.setExtent(getWidth(), getHeight());
+                }
             }
         });
+        m_obstacles.setExtent(m_world.getWidth(), m_world.getHeight());
+        m_simulation.setCollisionsEnabled(true);
+        m_simulation.setSpatialIndexKind(SpatialIndexKind.Grid);
+        m_simulation.setPathService(new PathService(m_obstacles));
+        m_simulation.setFlowFieldGenerator(new FlowFieldGenerator(m_obstacles));
+        m_simulation.addRobot(100, 100, 0);
+        m_simulation.setTarget(m_targetPositionX, m_targetPositionY);
         setDoubleBuffered(true);
+        // подсказки с роботом под курсором; текст даёт getToolTipText(MouseEvent)
+        setToolTipText("");
+        m_gameLoop.start();
     }
 
-    protected void setTargetPosition(Point p)
+    /**
+     * Сетка препятствий на весь экран: окно может вырасти до него, а
+     * реальный размер поля карта узнаёт через setExtent().
+     */
+    private static ObstacleMap createObstacleMap()
     {
-        m_targetPositionX = p.x;
-        m_targetPositionY = p.y;
+        Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+        int columns = Math.max(minObstacleGridSize, screen.width / obstacleCellSize + 1);
+        int rows = Math.max(minObstacleGridSize, screen.height / obstacleCellSize + 1);
+        return new ObstacleMap(obstacleCellSize, columns, rows);
     }
-    
-    protected void onRedrawEvent()
+
+    public Simulation getSimulation()
     {
-        EventQueue.invokeLater(this::repaint);
+        return m_simulation;
     }
 
-    private static double distance(double x1, double y1, double x2, double y2)
+    /**
+     * Ограничивает частоту кадров. Модель продолжает шагать с прежним шагом.
+     */
+    public void setFpsCap(int fps)
     {
-        double diffX = x1 - x2;
-        double diffY = y1 - y2;
-        return Math.sqrt(diffX * diffX + diffY * diffY);
+        if (fps <= 0)
+        {
+            throw new IllegalArgumentException("fps must be positive: " + fps);
+        }
+        m_gameLoop.setRenderPeriodMillis(1000.0 / fps);
     }
-    
-    private static double angleTo(double fromX, double fromY, double toX, double toY)
+
+    protected void setTargetPosition(Point p)
     {
-        double diffX = toX - fromX;
-        double diffY = toY - fromY;
-        
-        return asNormalizedRadians(Math.atan2(diffY, diffX));
+        m_targetPositionX = p.x;
+        m_targetPositionY = p.y;
+        m_simulation.setTarget(p.x, p.y);
+        m_idleFrameShown = false;
     }
-    
-    protected void onModelUpdateEvent()
+
+    /**
+     * Ставит или убирает препятствие в клетке под курсором. Роботы
+     * перепланируют пути на следующем тике.
+     */
+    protected void toggleObstacle(Point p)
     {
-        double distance = distance(m_targetPositionX, m_targetPositionY, 
-            m_robotPositionX, m_robotPositionY);
-        if (distance < 0.5)
+        int column = p.x / obstacleCellSize;
+        int row = p.y / obstacleCellSize;
+        if (column >= m_obstacles.getActiveColumns() || row >= m_obstacles.getActiveRows())
         {
+            // неполная клетка у края поля всегда занята
             return;
         }
-        double velocity = maxVelocity;
-        double angleToTarget = angleTo(m_robotPositionX, m_robotPositionY, m_targetPositionX, m_targetPositionY);
-        double angularVelocity = 0;
-        if (angleToTarget > m_robotDirection)
+        m_obstacles.setBlocked(column, row, !m_obstacles.isBlocked(column, row));
+        repaint(column * obstacleCellSize, row * obstacleCellSize, obstacleCellSize, obstacleCellSize);
+    }
+
+    /**
+     * Номер робота, на которого указывает p, или -1.
+     */
+    public int robotAt(Point p)
+    {
+        SpatialIndex index = m_simulation.getSpatialIndex();
+        if (index == null)
         {
-            angularVelocity = maxAngularVelocity;
+            return -1;
         }
-        if (angleToTarget < m_robotDirection)
+        // ближайший в индексе, но попадание проверяется по тому, что на экране
+        if (index.nearest(p.x, p.y, 1, m_hit) == 0)
         {
-            angularVelocity = -maxAngularVelocity;
+            return -1;
+        }
+        int robot = m_hit[0];
+        synchronized (m_frameLock)
+        {
+            RobotFrame frame = m_frontFrame;
+            if (robot >= frame.m_count)
+            {
+                return -1;
+            }
+            int dx = frame.m_x[robot] - p.x;
+            int dy = frame.m_y[robot] - p.y;
+            return dx * dx + dy * dy <= robotRadius * robotRadius ? robot : -1;
         }
-        
-        moveRobot(velocity, angularVelocity, 10);
-    }
-    
-    private static double applyLimits(double value, double min, double max)
-    {
-        if (value < min)
-            return min;
-        if (value > max)
-            return max;
-        return value;
     }
 
-    private static double applyMod(double value, double mod) {
-        if (mod < 1e-9) {
-            return mod;
-        }
-        while (value < 0) {
-            value += mod;
-        }
-        while (value > mod) {
-            value -= mod;
+    @Override
+    public String getToolTipText(MouseEvent event)
+    {
+        int robot = robotAt(event.getPoint());
+        if (robot < 0)
+        {
+            return null;
         }
-        return value;
+        RobotStore robots = m_simulation.getRobots();
+        return String.format("Робот %d: (%.0f, %.0f)%s", robot,
+            robots.getPositionX(robot), robots.getPositionY(robot),
+            robots.isSettled(robot) ? ", остановился" : "");
     }
 
-    private void moveRobot(double velocity, double angularVelocity, double duration)
+    protected void onRedrawEvent(double interpolation)
     {
-        velocity = applyLimits(velocity, 0, maxVelocity);
-        angularVelocity = applyLimits(angularVelocity, -maxAngularVelocity, maxAngularVelocity);
-        double newX = m_robotPositionX + velocity / angularVelocity * 
-            (Math.sin(m_robotDirection  + angularVelocity * duration) -
-                Math.sin(m_robotDirection));
-        if (!Double.isFinite(newX))
+        boolean idle = m_simulation.getMovedOnLastTick() == 0;
+        if (idle && m_idleFrameShown)
         {
-            newX = m_robotPositionX + velocity * duration * Math.cos(m_robotDirection);
+            return;
         }
-        double newY = m_robotPositionY - velocity / angularVelocity * 
-            (Math.cos(m_robotDirection  + angularVelocity * duration) -
-                Math.cos(m_robotDirection));
-        if (!Double.isFinite(newY))
+        m_backFrame.capture(m_simulation.getRobots(), interpolation,
+            m_world.getWidth(), m_world.getHeight(), m_targetPositionX, m_targetPositionY);
+        m_backFrame.collectChanges(m_frontFrame, m_dirtyRegion, robotRadius, targetRadius);
+        synchronized (m_frameLock)
         {
-            newY = m_robotPositionY + velocity * duration * Math.sin(m_robotDirection);
+            RobotFrame frame = m_frontFrame;
+            m_frontFrame = m_backFrame;
+            m_backFrame = frame;
         }
-
-        while (newX < 0) {
-            newX += getWidth();
+        m_idleFrameShown = idle;
+        if (!m_dirtyRegion.isEmpty())
+        {
+            repaint(m_dirtyRegion.toRectangle());
+            m_dirtyRegion.clear();
         }
+    }
 
-        m_robotPositionX = applyMod(newX, getWidth());
-        m_robotPositionY = applyMod(newY, getHeight());
-
-        double newDirection = asNormalizedRadians(m_robotDirection + angularVelocity * duration); 
-        m_robotDirection = newDirection;
+    protected void onModelUpdateEvent(double duration)
+    {
+        m_simulation.tick(duration);
     }
 
-    private static double asNormalizedRadians(double angle)
+    @Override
+    public void paint(Graphics g)
     {
-        while (angle < 0)
-        {
-            angle += 2*Math.PI;
-        }
-        while (angle >= 2*Math.PI)
+        super.paint(g);
+        Graphics2D g2d = (Graphics2D)g;
+        Rectangle clip = g2d.getClipBounds();
+        drawObstacles(g2d, clip);
+        synchronized (m_frameLock)
         {
-            angle -= 2*Math.PI;
+            RobotFrame frame = m_frontFrame;
+            SpatialIndex index = m_simulation.getSpatialIndex();
+            if (clip != null && index != null && index.size() == frame.m_count)
+            {
+                m_paintGraphics = g2d;
+                m_paintClip = clip;
+                m_paintFrame = frame;
+                index.queryRect(clip.x - indexMargin, clip.y - indexMargin,
+                    clip.x + clip.width + indexMargin, clip.y + clip.height + indexMargin, m_paintVisitor);
+                m_paintGraphics = null;
+                m_paintClip = null;
+                m_paintFrame = null;
+            }
+            else
+            {
+                for (int i = 0; i < frame.m_count; ++i)
+                {
+                    drawRobotInClip(g2d, clip, frame, i);
+                }
+            }
+            drawTarget(g2d, frame.m_targetX, frame.m_targetY);
         }
-        return angle;
     }
-    
-    private static int round(double value)
+
+    private void paintIndexedRobot(int robot)
     {
-        return (int)(value + 0.5);
+        drawRobotInClip(m_paintGraphics, m_paintClip, m_paintFrame, robot);
     }
-    
-    @Override
-    public void paint(Graphics g)
+
+    private void drawRobotInClip(Graphics2D g, Rectangle clip, RobotFrame frame, int robot)
     {
-        super.paint(g);
-        Graphics2D g2d = (Graphics2D)g; 
-        drawRobot(g2d, round(m_robotPositionX), round(m_robotPositionY), m_robotDirection);
-        drawTarget(g2d, m_targetPositionX, m_targetPositionY);
+        int x = frame.m_x[robot];
+        int y = frame.m_y[robot];
+        if (clip == null || clip.intersects(x - robotRadius, y - robotRadius,
+            2 * robotRadius, 2 * robotRadius))
+        {
+            drawRobot(g, x, y, frame.m_direction[robot]);
+        }
     }
-    
+
     private static void fillOval(Graphics g, int centerX, int centerY, int diam1, int diam2)
     {
         g.fillOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
     }
-    
+
     private static void drawOval(Graphics g, int centerX, int centerY, int diam1, int diam2)
     {
         g.drawOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
     }
-    
+
     private void drawRobot(Graphics2D g, int x, int y, double direction)
     {
-        int robotCenterX = round(m_robotPositionX); 
-        int robotCenterY = round(m_robotPositionY);
-        AffineTransform t = AffineTransform.getRotateInstance(direction, robotCenterX, robotCenterY); 
-        g.setTransform(t);
-        g.setColor(Color.MAGENTA);
-        fillOval(g, robotCenterX, robotCenterY, 30, 10);
-        g.setColor(Color.BLACK);
-        drawOval(g, robotCenterX, robotCenterY, 30, 10);
-        g.setColor(Color.WHITE);
-        fillOval(g, robotCenterX  + 10, robotCenterY, 5, 5);
-        g.setColor(Color.BLACK);
-        drawOval(g, robotCenterX  + 10, robotCenterY, 5, 5);
+        m_sprites.drawRobot(g, x, y, direction);
     }
-    
+
+    private void drawObstacles(Graphics2D g, Rectangle clip)
+    {
+        Rectangle area = clip != null ? clip : new Rectangle(0, 0, getWidth(), getHeight());
+        int firstColumn = m_obstacles.columnOf(area.x);
+        int lastColumn = m_obstacles.columnOf(area.x + area.width);
+        int firstRow = m_obstacles.rowOf(area.y);
+        int lastRow = m_obstacles.rowOf(area.y + area.height);
+        g.setColor(Color.GRAY);
+        for (int row = firstRow; row <= lastRow; ++row)
+        {
+            for (int column = firstColumn; column <= lastColumn; ++column)
+            {
+                if (m_obstacles.isBlocked(column, row))
+                {
+                    g.fillRect(column * obstacleCellSize, row * obstacleCellSize,
+                        obstacleCellSize, obstacleCellSize);
+                }
+            }
+        }
+    }
+
     private void drawTarget(Graphics2D g, int x, int y)
     {
-        AffineTransform t = AffineTransform.getRotateInstance(0, 0, 0); 
-        g.setTransform(t);
         g.setColor(Color.GREEN);
         fillOval(g, x, y, 5, 5);
         g.setColor(Color.BLACK);
@@ -1,17 +1,31 @@
 package gui;
 
 import java.awt.BorderLayout;
+import java.awt.Component;
 import java.beans.PropertyVetoException;
 import javax.swing.JInternalFrame;
 import javax.swing.JPanel;
 import backup.BackupObj;
 
 public class GameWindow extends JInternalFrame implements BackupObj {
-    private final GameVisualizer m_visualizer;
+    private final Component m_visualizer;
     public GameWindow() 
     {
-        super("Игровое_поле", true, true, true, true);
-        m_visualizer = new GameVisualizer();
+        this(RenderMode.Passive);
+    }
+
+    public GameWindow(RenderMode renderMode)
+    {
+        super(renderMode == RenderMode.Active ? "Игровое_поле_(активная_отрисовка)" : "Игровое_поле",
+            true, true, true, true);
+        if (renderMode == RenderMode.Active)
+        {
+            m_visualizer = new ActiveGameCanvas();
+        }
+        else
+        {
+            m_visualizer = new GameVisualizer();
+        }
         JPanel panel = new JPanel(new BorderLayout());
         panel.add(m_visualizer, BorderLayout.CENTER);
         getContentPane().add(panel);
@@ -1,14 +1,20 @@
 package gui;
 
 import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
 import java.beans.PropertyVetoException;
+import javax.swing.JComboBox;
 import javax.swing.JInternalFrame;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.UIManager;
 import backup.BackupObj;
-import gradient.Circle;
-import gradient.Circle2;
-import gradient.Oval;
 import gradient.GradientVisualizer;
+import gradient.Terrain;
+import gradient.optimizer.OptimizerKind;
+import log.Logger;
 
 public class GradientWindow extends JInternalFrame implements BackupObj {
     private final GradientVisualizer m_visualizer;
@@ -16,13 +22,48 @@ public class GradientWindow extends JInternalFrame implements BackupObj {
     public GradientWindow()
     {
         super("Градиентное_поле", true, true, true, true);
-        m_visualizer = new GradientVisualizer(new Circle2(50, 200, 350, 200), 0.1);
+        m_visualizer = new GradientVisualizer(Terrain.Circle2.create(), 0.1);
+        JComboBox<Terrain> terrainBox = new JComboBox<>(Terrain.values());
+        terrainBox.addActionListener((event) -> {
+            Terrain terrain = (Terrain) terrainBox.getSelectedItem();
+            m_visualizer.setGradientFunction(terrain.create());
+        });
+        JTextField formulaField = new JTextField(16);
+        formulaField.setToolTipText("Формула от x и y, например rastrigin(1) - 2 * gauss(1, 1, 0.5); "
+                + "единица - 100 пикселей от точки (200, 200)");
+        formulaField.addActionListener((event) -> {
+            try {
+                m_visualizer.setGradientFunction(Terrain.formula(formulaField.getText()));
+                formulaField.setForeground(UIManager.getColor("TextField.foreground"));
+            } catch (IllegalArgumentException e) {
+                formulaField.setForeground(Color.RED);
+                Logger.warning("Формула не разобрана: " + e.getMessage());
+            }
+        });
+        JComboBox<OptimizerKind> optimizerBox = new JComboBox<>(OptimizerKind.values());
+        optimizerBox.addActionListener((event) -> {
+            OptimizerKind kind = (OptimizerKind) optimizerBox.getSelectedItem();
+            m_visualizer.setOptimizer(kind.create(m_visualizer.getLearningRate()));
+        });
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("Рельеф"));
+        controls.add(terrainBox);
+        controls.add(formulaField);
+        controls.add(new JLabel("Алгоритм"));
+        controls.add(optimizerBox);
+
         JPanel panel = new JPanel(new BorderLayout());
+        panel.add(controls, BorderLayout.NORTH);
         panel.add(m_visualizer, BorderLayout.CENTER);
         getContentPane().add(panel);
         pack();
     }
 
+    public GradientVisualizer getVisualizer()
+    {
+        return m_visualizer;
+    }
+
     @Override
     public String toBackupString() {
         System.out.println(this.toString());
@@ -0,0 +1,220 @@
+package gui;
+
+import java.util.Arrays;
+
+import javax.swing.AbstractListModel;
+
+import log.LogEntry;
+import log.LogLevel;
+import log.LogWindowSource;
+
+/**
+ * Модель списка поверх LogWindowSource: строка - это номер сообщения в
+ * буфере, а само сообщение читается только когда JList рисует строку.
+ * Поэтому отрисовка стоит столько, сколько строк видно, а не сколько
+ * сообщений в буфере.
+ *
+ * Без фильтра строка i - это сообщение firstSequence + i. С фильтром
+ * модель хранит номера подходящих сообщений (сами сообщения не копируются),
+ * дописывает их по мере поступления и выбрасывает затёртые.
+ *
+ * Все методы вызываются из потока событий.
+ */
+class LogListModel extends AbstractListModel<LogEntry>
+{
+    private final LogWindowSource m_source;
+
+    private long m_first;
+    private long m_end;
+
+    private LogLevel m_minLevel = LogLevel.Trace;
+    private String m_search = "";
+    private final LogEntry m_scanned = new LogEntry();
+    private long[] m_matches = new long[0];
+    private int m_matchHead;
+    private int m_matchCount;
+
+    LogListModel(LogWindowSource source)
+    {
+        m_source = source;
+    }
+
+    @Override
+    public int getSize()
+    {
+        return isFiltered() ? m_matchCount : (int)(m_end - m_first);
+    }
+
+    /**
+     * Сообщение строки или null, если его уже затёрли новые.
+     */
+    @Override
+    public LogEntry getElementAt(int index)
+    {
+        return m_source.get(sequenceAt(index));
+    }
+
+    long sequenceAt(int index)
+    {
+        return isFiltered() ? m_matches[m_matchHead + index] : m_first + index;
+    }
+
+    boolean isFiltered()
+    {
+        return m_minLevel != LogLevel.Trace || !m_search.isEmpty();
+    }
+
+    /**
+     * Подтягивает сообщения до номера end: выбрасывает затёртые строки из
+     * начала и добавляет новые в конец.
+     * @return сколько строк ушло из начала списка
+     */
+    int update(long end)
+    {
+        if (end <= m_end)
+        {
+            return 0;
+        }
+        long first = Math.max(m_first, end - m_source.capacity());
+        int removed;
+        int oldSize = getSize();
+        if (isFiltered())
+        {
+            removed = 0;
+            while (m_matchCount > 0 && m_matches[m_matchHead] < first)
+            {
+                m_matchHead++;
+                m_matchCount--;
+                removed++;
+            }
+            m_first = first;
+            scan(Math.max(m_end, first), end);
+            m_end = end;
+        }
+        else
+        {
+            removed = (int)Math.min(first - m_first, oldSize);
+            m_first = first;
+            m_end = end;
+        }
+        if (removed > 0)
+        {
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+        int size = getSize();
+        if (size > oldSize - removed)
+        {
+            fireIntervalAdded(this, oldSize - removed, size - 1);
+        }
+        return removed;
+    }
+
+    /**
+     * Меняет фильтр. Если новый фильтр только сужает прежний (уровень не
+     * ниже, строка поиска содержит прежнюю), проверяются лишь найденные
+     * раньше сообщения, иначе - заново все хранимые.
+     * @param search подстрока без учёта регистра, пустая - без поиска
+     */
+    void setFilter(LogLevel minLevel, String search)
+    {
+        int oldSize = getSize();
+        boolean narrowing = isFiltered() && minLevel.level() >= m_minLevel.level()
+            && containsIgnoreCase(search, m_search);
+        m_minLevel = minLevel;
+        m_search = search;
+        if (narrowing)
+        {
+            narrow();
+        }
+        else if (isFiltered())
+        {
+            m_matchHead = 0;
+            m_matchCount = 0;
+            scan(m_first, m_end);
+        }
+        else
+        {
+            m_matchHead = 0;
+            m_matchCount = 0;
+            m_matches = new long[0];
+        }
+        if (oldSize > 0)
+        {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        int size = getSize();
+        if (size > 0)
+        {
+            fireIntervalAdded(this, 0, size - 1);
+        }
+    }
+
+    private void scan(long from, long to)
+    {
+        for (long sequence = from; sequence < to; ++sequence)
+        {
+            if (m_source.read(sequence, m_scanned) && matches(m_scanned))
+            {
+                addMatch(sequence);
+            }
+        }
+    }
+
+    /**
+     * Оставляет из найденных номеров те, что подходят под текущий фильтр.
+     */
+    private void narrow()
+    {
+        int kept = 0;
+        for (int i = 0; i < m_matchCount; ++i)
+        {
+            long sequence = m_matches[m_matchHead + i];
+            if (m_source.read(sequence, m_scanned) && matches(m_scanned))
+            {
+                m_matches[m_matchHead + kept++] = sequence;
+            }
+        }
+        m_matchCount = kept;
+    }
+
+    private boolean matches(LogEntry entry)
+    {
+        if (entry.getLevel().level() < m_minLevel.level())
+        {
+            return false;
+        }
+        return m_search.isEmpty() || containsIgnoreCase(entry.getMessage(), m_search);
+    }
+
+    private void addMatch(long sequence)
+    {
+        if (m_matchHead + m_matchCount == m_matches.length)
+        {
+            if (m_matchHead > m_matches.length / 2)
+            {
+                System.arraycopy(m_matches, m_matchHead, m_matches, 0, m_matchCount);
+            }
+            else
+            {
+                long[] matches = Arrays.copyOf(m_matches, Math.max(16, m_matches.length * 2));
+                System.arraycopy(matches, m_matchHead, matches, 0, m_matchCount);
+                m_matches = matches;
+            }
+            m_matchHead = 0;
+        }
+        m_matches[m_matchHead + m_matchCount++] = sequence;
+    }
+
+    private static boolean containsIgnoreCase(String text, String search)
+    {
+        int last = text.length() - search.length();
+        for (int offset = 0; offset <= last; ++offset)
+        {
+            if (text.regionMatches(true, offset, search, 0, search.length()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,55 +1,144 @@
 package gui;
 
 import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
 import java.awt.EventQueue;
-import java.awt.TextArea;
+import java.awt.FlowLayout;
 import java.beans.PropertyVetoException;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import log.LogChangeListener;
 import log.LogEntry;
+import log.LogLevel;
 import log.LogWindowSource;
 
 import backup.BackupObj;
 
+/**
+ * Окно протокола. Список виртуальный (LogListModel): рисуются только видимые
+ * строки, а новые сообщения дописываются в конец без перестроения всего
+ * текста. Если список прокручен до конца, он следует за новыми
+ * сообщениями, иначе остаётся на тех же строках.
+ */
 public class LogWindow extends JInternalFrame implements LogChangeListener, BackupObj
 {
+    /**
+     * Поиск запускается, когда ввод стих на это время, а не на каждую букву.
+     */
+    private static final int searchDelayMillis = 250;
+
     private LogWindowSource m_logSource;
-    private TextArea m_logContent;
+    private final LogListModel m_model;
+    private final JList<LogEntry> m_logContent;
+    private final JScrollPane m_scrollPane;
+    private final JComboBox<LogLevel> m_levelFilter;
+    private final JTextField m_searchField;
+    private final Timer m_searchTimer;
 
     public LogWindow(LogWindowSource logSource) 
     {
         super("Протокол_работы", true, true, true, true);
         m_logSource = logSource;
-        m_logSource.registerListener(this);
-        m_logContent = new TextArea("");
-        m_logContent.setSize(200, 500);
+        m_model = new LogListModel(logSource);
+        m_logContent = new JList<>(m_model);
+        m_logContent.setCellRenderer(new EntryRenderer());
+        m_logContent.setPrototypeCellValue(new LogEntry(LogLevel.Warning,
+            "Сообщение протокола обычной длины для расчёта ширины"));
+        m_scrollPane = new JScrollPane(m_logContent);
+        m_scrollPane.setPreferredSize(new Dimension(200, 500));
+
+        m_levelFilter = new JComboBox<>(LogLevel.values());
+        m_levelFilter.addActionListener(e -> applyFilter());
+        m_searchTimer = new Timer(searchDelayMillis, e -> applyFilter());
+        m_searchTimer.setRepeats(false);
+        m_searchField = new JTextField(12);
+        m_searchField.getDocument().addDocumentListener(new DocumentListener()
+        {
+            @Override
+            public void insertUpdate(DocumentEvent e)
+            {
+                m_searchTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e)
+            {
+                m_searchTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e)
+            {
+                m_searchTimer.restart();
+            }
+        });
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Уровень"));
+        filterPanel.add(m_levelFilter);
+        filterPanel.add(new JLabel("Поиск"));
+        filterPanel.add(m_searchField);
 
         JPanel panel = new JPanel(new BorderLayout());
-        panel.add(m_logContent, BorderLayout.CENTER);
+        panel.add(filterPanel, BorderLayout.NORTH);
+        panel.add(m_scrollPane, BorderLayout.CENTER);
         getContentPane().add(panel);
         pack();
+        m_logSource.registerListener(this);
         updateLogContent();
     }
 
     private void updateLogContent()
     {
-        StringBuilder content = new StringBuilder();
-        for (LogEntry entry : m_logSource.all())
+        JScrollBar scrollBar = m_scrollPane.getVerticalScrollBar();
+        boolean followTail = scrollBar.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum();
+        int removed = m_model.update(m_logSource.endSequence());
+        int size = m_model.getSize();
+        if (followTail && size > 0)
         {
-            content.append(entry.getMessage()).append("\n");
+            m_logContent.ensureIndexIsVisible(size - 1);
+        }
+        else if (removed > 0)
+        {
+            // строки сверху ушли - сдвигаем вид, чтобы не прыгали видимые
+            int rowHeight = m_logContent.getFixedCellHeight();
+            scrollBar.setValue(Math.max(0, scrollBar.getValue() - removed * rowHeight));
+        }
+    }
+
+    private void applyFilter()
+    {
+        m_searchTimer.stop();
+        m_model.setFilter((LogLevel)m_levelFilter.getSelectedItem(), m_searchField.getText());
+        int size = m_model.getSize();
+        if (size > 0)
+        {
+            m_logContent.ensureIndexIsVisible(size - 1);
         }
-        m_logContent.setText(content.toString());
-        m_logContent.invalidate();
     }
 
     @Override
-    public void onLogChanged()
+    public void onLogChanged(long fromSequence, long toSequence)
     {
         EventQueue.invokeLater(this::updateLogContent);
     }
 
+    private static class EntryRenderer extends DefaultListCellRenderer
+    {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value,
+            int index, boolean isSelected, boolean cellHasFocus)
+        {
+            super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            LogEntry entry = (LogEntry)value;
+            setText(entry == null ? "" : entry.getLevel() + ": " + entry.getMessage());
+            return this;
+        }
+    }
+
     @Override
     public String toBackupString() {
         StringBuilder builder = new StringBuilder();
@@ -16,6 +16,7 @@ import javax.swing.event.InternalFrameAdapter;
 import javax.swing.event.InternalFrameEvent;
 
 import backup.BackupObj;
+import gradient.SwarmSeeding;
 import log.Logger;
 
 /**
@@ -27,6 +28,7 @@ public class MainApplicationFrame extends JFrame implements BackupObj
 {
     private final JDesktopPane desktopPane = new JDesktopPane();
     private final String backupFilename = "backup.txt";
+    private final GradientWindow gradientWindow;
 
     public MainApplicationFrame() {
         //Make the big window be indented 50 pixels from each edge
@@ -47,7 +49,7 @@ public class MainApplicationFrame extends JFrame implements BackupObj
         gameWindow.setSize(400, 400);
         addWindow(gameWindow);
 
-        GradientWindow gradientWindow = new GradientWindow();
+        gradientWindow = new GradientWindow();
         gradientWindow.setSize(400, 400);
         gradientWindow.setLocation(500, 500);
         addWindow(gradientWindow);
@@ -147,6 +149,30 @@ public class MainApplicationFrame extends JFrame implements BackupObj
             });
             testMenu.add(addLogMessageItem);
         }
+
+        {
+            JMenuItem swarmItem = new JMenuItem("Рой на градиентном поле", KeyEvent.VK_R);
+            swarmItem.addActionListener((event) -> {
+                gradientWindow.getVisualizer().enableSwarm(100_000, SwarmSeeding.Random);
+            });
+            testMenu.add(swarmItem);
+        }
+
+        {
+            JMenuItem robotItem = new JMenuItem("Один робот на градиентном поле", KeyEvent.VK_O);
+            robotItem.addActionListener((event) -> {
+                gradientWindow.getVisualizer().disableSwarm();
+            });
+            testMenu.add(robotItem);
+        }
+
+        {
+            JCheckBoxMenuItem basinItem = new JCheckBoxMenuItem("Бассейны притяжения");
+            basinItem.addActionListener((event) -> {
+                gradientWindow.getVisualizer().setShowBasinMap(basinItem.isSelected());
+            });
+            testMenu.add(basinItem);
+        }
         menuBar.add(testMenu);
     }
 
@@ -190,11 +216,30 @@ public class MainApplicationFrame extends JFrame implements BackupObj
         menuBar.add(fileMenu);
     }
 
+    private void addWindowsMenu(JMenuBar menuBar) {
+        JMenu windowsMenu = new JMenu("Окна");
+        windowsMenu.setMnemonic(KeyEvent.VK_W);
+        windowsMenu.getAccessibleContext().setAccessibleDescription(
+                "Открытие новых окон");
+
+        {
+            JMenuItem activeGameItem = new JMenuItem("Игровое поле (активная отрисовка)", KeyEvent.VK_A);
+            activeGameItem.addActionListener((event) -> {
+                GameWindow gameWindow = new GameWindow(RenderMode.Active);
+                gameWindow.setSize(400, 400);
+                addWindow(gameWindow);
+            });
+            windowsMenu.add(activeGameItem);
+        }
+        menuBar.add(windowsMenu);
+    }
+
     private JMenuBar generateMenuBar()
     {
         JMenuBar menuBar = new JMenuBar();
         addLookAndFeelMenu(menuBar);
         addTestMenu(menuBar);
+        addWindowsMenu(menuBar);
         addFileTab(menuBar);
         return menuBar;
     }
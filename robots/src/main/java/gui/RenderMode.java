@@ -0,0 +1,9 @@
+package gui;
+
+public enum RenderMode
+{
+    /** Отрисовка через Swing paint() с перерисовкой изменённых областей */
+    Passive,
+    /** Отдельный поток рисует в Canvas через BufferStrategy */
+    Active
+}
@@ -0,0 +1,87 @@
+package gui;
+
+import model.Kinematics;
+import model.RobotStore;
+
+/**
+ * Снимок положений роботов для одного кадра, уже интерполированный и
+ * округлённый до пикселей. Массивы переиспользуются между кадрами.
+ */
+class RobotFrame
+{
+    int m_count;
+    int[] m_x = new int[0];
+    int[] m_y = new int[0];
+    double[] m_direction = new double[0];
+    int m_targetX;
+    int m_targetY;
+
+    public void capture(RobotStore robots, double alpha, double width, double height,
+        int targetX, int targetY)
+    {
+        // Чтение volatile-версии - барьер, а не проверка: publish() в потоке
+        // модели пишет версию после записи массивов за тик, поэтому всё,
+        // что записано до последней увиденной здесь версии, этому потоку
+        // видно (happens-before). Значение не нужно, важно само чтение до
+        // чтения массивов.
+        robots.getVersion();
+        int count = robots.size();
+        if (m_x.length < count)
+        {
+            int capacity = Math.max(count, m_x.length * 2);
+            m_x = new int[capacity];
+            m_y = new int[capacity];
+            m_direction = new double[capacity];
+        }
+        double[] positionX = robots.positionsX();
+        double[] positionY = robots.positionsY();
+        double[] direction = robots.directions();
+        double[] previousX = robots.previousPositionsX();
+        double[] previousY = robots.previousPositionsY();
+        double[] previousDirection = robots.previousDirections();
+        for (int i = 0; i < count; ++i)
+        {
+            m_x[i] = round(Kinematics.interpolate(previousX[i], positionX[i], alpha, width));
+            m_y[i] = round(Kinematics.interpolate(previousY[i], positionY[i], alpha, height));
+            m_direction[i] = Kinematics.interpolate(previousDirection[i], direction[i], alpha, 2 * Math.PI);
+        }
+        m_count = count;
+        m_targetX = targetX;
+        m_targetY = targetY;
+    }
+
+    /**
+     * Добавляет в region области, которые отличаются между этим кадром и previous.
+     */
+    public void collectChanges(RobotFrame previous, DirtyRegion region, int robotRadius, int targetRadius)
+    {
+        int common = Math.min(m_count, previous.m_count);
+        for (int i = 0; i < common; ++i)
+        {
+            if (m_x[i] != previous.m_x[i] || m_y[i] != previous.m_y[i]
+                || m_direction[i] != previous.m_direction[i])
+            {
+                region.add(previous.m_x[i], previous.m_y[i], robotRadius);
+                region.add(m_x[i], m_y[i], robotRadius);
+            }
+        }
+        for (int i = common; i < m_count; ++i)
+        {
+            region.add(m_x[i], m_y[i], robotRadius);
+        }
+        for (int i = common; i < previous.m_count; ++i)
+        {
+            region.add(previous.m_x[i], previous.m_y[i], robotRadius);
+        }
+        if (m_targetX != previous.m_targetX || m_targetY != previous.m_targetY)
+        {
+            region.add(previous.m_targetX, previous.m_targetY, targetRadius);
+            region.add(m_targetX, m_targetY, targetRadius);
+        }
+    }
+
+    private static int round(double value)
+    {
+        return (int)(value + 0.5);
+    }
+}
@@ -1,9 +1,13 @@
 package gui;
 
 import java.awt.Frame;
+import java.nio.file.Paths;
 
 import javax.swing.*;
 
+import log.FileLogSink;
+import log.Logger;
+
 public class RobotsProgram
 {
     public static void main(String[] args) {
@@ -15,6 +19,10 @@ public class RobotsProgram
       } catch (Exception e) {
         e.printStackTrace();
       }
+      FileLogSink logSink = new FileLogSink(Logger.getDefaultLogSource(), Paths.get("logs"), "robots");
+      logSink.setCompressRotated(true);
+      logSink.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(logSink::close));
       SwingUtilities.invokeLater(() -> {
         MainApplicationFrame frame = new MainApplicationFrame();
         frame.pack();
@@ -0,0 +1,15 @@
+package log;
+
+/**
+ * Что делать писателю лога, когда FileLogSink отстал от него почти на
+ * весь кольцевой буфер.
+ */
+public enum BackpressurePolicy
+{
+    /** писать как обычно: сообщения, которые затрёт буфер, в файл не попадут */
+    Drop,
+    /** ждать, пока запись в файл освободит место в буфере */
+    Block,
+    /** пропускать часть сообщений ниже Warning, пока отставание не уйдёт */
+    Sample
+}
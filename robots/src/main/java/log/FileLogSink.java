@@ -0,0 +1,476 @@
+package log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Пишет сообщения LogWindowSource в файл из своего потока. Поток читает
+ * буфер пачками по номерам, начиная с последнего записанного, складывает
+ * строки в большой ByteBuffer и отдаёт его FileChannel целиком, так что на
+ * сотни сообщений приходится один системный вызов. Строка файла - время
+ * System.nanoTime(), номер потока в скобках, уровень и текст сообщения.
+ *
+ * Текущий файл - directory/baseName.log. Когда он дорастает до maxFileBytes
+ * или живёт дольше rotationMillis, он переименовывается в
+ * baseName-время.log и при желании сжимается в .gz отдельным потоком.
+ *
+ * Писатели лога диск не ждут никогда. Если поток записи отстаёт почти на
+ * весь буфер, действует BackpressurePolicy: при Drop затёртые сообщения
+ * теряются (в файл пишется, сколько), при Block писатель ждёт места в
+ * буфере, при Sample из сообщений ниже Warning проходит каждое sampleRate-е.
+ * Пока запись в файл не удаётся, Block ведёт себя как Drop: диск может не
+ * вернуться, а ждать его писателям (в том числе потоку событий) нельзя.
+ *
+ * Записанным сообщение считается, когда его байты ушли в файл: после ошибки
+ * записи поток повторяет только то, что в файл не попало.
+ *
+ * Настройки задаются до start().
+ */
+public class FileLogSink implements LogChangeListener, LogGate
+{
+    public static final long DEFAULT_MAX_FILE_BYTES = 64L << 20;
+    public static final long DEFAULT_ROTATION_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final int bufferBytes = 256 << 10;
+    private static final long idleParkNanos = TimeUnit.SECONDS.toNanos(1);
+    private static final long blockParkNanos = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final LogWindowSource m_source;
+    private final Path m_directory;
+    private final String m_baseName;
+    private final Path m_current;
+
+    private long m_maxFileBytes = DEFAULT_MAX_FILE_BYTES;
+    private long m_rotationMillis = DEFAULT_ROTATION_MILLIS;
+    private boolean m_compressRotated;
+    private BackpressurePolicy m_policy = BackpressurePolicy.Drop;
+    private int m_sampleRate = 10;
+    private int m_batchSize = 4096;
+
+    private final AtomicLong m_written = new AtomicLong();
+    private final AtomicLong m_lostTotal = new AtomicLong();
+    private final AtomicLong m_sampleCounter = new AtomicLong();
+    private volatile boolean m_running;
+    private volatile boolean m_failing;
+    private volatile Thread m_thread;
+    private ExecutorService m_compressor;
+
+    // трогаются только из потока записи
+    private final ByteBuffer m_buffer = ByteBuffer.allocateDirect(bufferBytes);
+    private final CharsetEncoder m_encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final LogEntry m_entry = new LogEntry();
+    private final StringBuilder m_line = new StringBuilder(256);
+    private FileChannel m_channel;
+    private long m_fileBytes;
+    private long m_fileCreated;
+    private long m_lost;
+    // следующее сообщение для буфера и первое из ещё не целиком лежащих в нём
+    private long m_drained;
+    private long m_buffered;
+
+    public FileLogSink(LogWindowSource source, Path directory, String baseName)
+    {
+        m_source = source;
+        m_directory = directory;
+        m_baseName = baseName;
+        m_current = directory.resolve(baseName + ".log");
+    }
+
+    public void setMaxFileBytes(long maxFileBytes)
+    {
+        m_maxFileBytes = maxFileBytes;
+    }
+
+    /**
+     * @param rotationMillis возраст файла, после которого он ротируется;
+     * 0 - только по размеру
+     */
+    public void setRotationMillis(long rotationMillis)
+    {
+        m_rotationMillis = rotationMillis;
+    }
+
+    public void setCompressRotated(boolean compressRotated)
+    {
+        m_compressRotated = compressRotated;
+    }
+
+    public void setBackpressure(BackpressurePolicy policy)
+    {
+        m_policy = policy;
+    }
+
+    public void setSampleRate(int sampleRate)
+    {
+        m_sampleRate = Math.max(sampleRate, 1);
+    }
+
+    public void setBatchSize(int batchSize)
+    {
+        m_batchSize = Math.max(batchSize, 1);
+    }
+
+    public Path getCurrentFile()
+    {
+        return m_current;
+    }
+
+    /**
+     * Номер, следующий за последним сообщением, отданным в файл.
+     */
+    public long getWrittenSequence()
+    {
+        return m_written.get();
+    }
+
+    /**
+     * Сколько сообщений затёрто в буфере раньше, чем попало в файл.
+     */
+    public long getLostCount()
+    {
+        return m_lostTotal.get();
+    }
+
+    /**
+     * Запускает поток записи. В файл попадут и сообщения, которые уже
+     * лежат в буфере.
+     */
+    public synchronized void start()
+    {
+        if (m_thread != null)
+        {
+            throw new IllegalStateException("File log sink is already started");
+        }
+        m_written.set(m_source.firstSequence());
+        m_drained = m_written.get();
+        m_buffered = m_drained;
+        m_running = true;
+        if (m_compressRotated)
+        {
+            m_compressor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "log compressor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        Thread thread = new Thread(this::run, "log writer");
+        thread.setDaemon(true);
+        m_thread = thread;
+        m_source.registerListener(this);
+        m_source.setGate(this);
+        thread.start();
+    }
+
+    /**
+     * Дописывает всё, что успело попасть в буфер, и закрывает файл.
+     */
+    public synchronized void close()
+    {
+        Thread thread = m_thread;
+        if (thread == null || !m_running)
+        {
+            return;
+        }
+        m_source.setGate(null);
+        m_source.unregisterListener(this);
+        m_running = false;
+        LockSupport.unpark(thread);
+        try
+        {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+            if (m_compressor != null)
+            {
+                m_compressor.shutdown();
+                m_compressor.awaitTermination(30, TimeUnit.SECONDS);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void onLogChanged(long fromSequence, long toSequence)
+    {
+        LockSupport.unpark(m_thread);
+    }
+
+    @Override
+    public boolean admit(LogLevel logLevel)
+    {
+        Thread thread = m_thread;
+        if (Thread.currentThread() == thread)
+        {
+            return true;
+        }
+        int capacity = m_source.capacity();
+        long lag = m_source.claimedSequence() - m_written.get();
+        if (lag < capacity / 2)
+        {
+            return true;
+        }
+        // уведомления приходят раз в интервал, а буфер может заполниться
+        // быстрее: будим поток записи сами
+        LockSupport.unpark(thread);
+        switch (m_failing ? BackpressurePolicy.Drop : m_policy)
+        {
+        case Block:
+            while (m_running && !m_failing
+                && m_source.claimedSequence() - m_written.get() >= capacity - capacity / 8)
+            {
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(this, blockParkNanos);
+            }
+            return true;
+        case Sample:
+            return logLevel.level() >= LogLevel.Warning.level()
+                || m_sampleCounter.incrementAndGet() % m_sampleRate == 0;
+        default:
+            return true;
+        }
+    }
+
+    private void run()
+    {
+        while (true)
+        {
+            boolean running = m_running;
+            try
+            {
+                if (rotationDue())
+                {
+                    rotate();
+                }
+                long end = m_source.endSequence();
+                if (m_drained < end)
+                {
+                    drain(end);
+                    continue;
+                }
+                flush();
+                if (!running)
+                {
+                    break;
+                }
+            }
+            catch (IOException e)
+            {
+                if (!m_failing)
+                {
+                    e.printStackTrace();
+                    m_failing = true;
+                }
+                // недописанное повторим с первого сообщения, не попавшего в файл
+                closeChannel();
+                m_buffer.clear();
+                m_encoder.reset();
+                m_drained = m_written.get();
+                m_buffered = m_drained;
+                if (!running)
+                {
+                    break;
+                }
+            }
+            LockSupport.parkNanos(this, idleParkNanos);
+        }
+        closeChannel();
+    }
+
+    /**
+     * Одна пачка не больше m_batchSize сообщений от последнего записанного.
+     */
+    private void drain(long end) throws IOException
+    {
+        long sequence = m_drained;
+        long first = Math.max(0, end - m_source.capacity());
+        if (sequence < first)
+        {
+            m_lost += first - sequence;
+            sequence = first;
+        }
+        long to = Math.min(end, sequence + m_batchSize);
+        for (; sequence < to; ++sequence)
+        {
+            if (!m_source.read(sequence, m_entry))
+            {
+                m_lost++;
+                continue;
+            }
+            m_line.setLength(0);
+            if (m_lost > 0)
+            {
+                m_lostTotal.addAndGet(m_lost);
+                m_line.append("... пропущено сообщений: ").append(m_lost);
+                writeLine(m_line);
+                m_line.setLength(0);
+                m_lost = 0;
+            }
+            m_line.append(m_entry.getNanoTime()).append(" [").append(m_entry.getThreadId()).append("] ")
+                .append(m_entry.getLevel()).append(": ");
+            m_entry.formatTo(m_line);
+            writeLine(m_line);
+            m_buffered = sequence + 1;
+            if (m_fileBytes + m_buffer.position() >= m_maxFileBytes)
+            {
+                rotate();
+            }
+        }
+        m_drained = sequence;
+        m_buffered = sequence;
+    }
+
+    private void writeLine(CharSequence line) throws IOException
+    {
+        CharBuffer chars = CharBuffer.wrap(line);
+        while (true)
+        {
+            CoderResult result = m_encoder.encode(chars, m_buffer, true);
+            if (!result.isOverflow())
+            {
+                break;
+            }
+            flush();
+        }
+        m_encoder.reset();
+        if (!m_buffer.hasRemaining())
+        {
+            flush();
+        }
+        m_buffer.put((byte)'\n');
+    }
+
+    private void flush() throws IOException
+    {
+        if (m_buffer.position() == 0)
+        {
+            return;
+        }
+        m_buffer.flip();
+        write(m_buffer);
+        m_buffer.clear();
+        m_written.set(m_buffered);
+        m_failing = false;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException
+    {
+        if (m_channel == null)
+        {
+            open();
+        }
+        while (buffer.hasRemaining())
+        {
+            m_fileBytes += m_channel.write(buffer);
+        }
+    }
+
+    private void open() throws IOException
+    {
+        Files.createDirectories(m_directory);
+        m_channel = FileChannel.open(m_current,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        m_fileBytes = m_channel.size();
+        // возраст файла считается от его создания, а не от открытия: иначе
+        // каждый перезапуск или ошибка записи откладывали бы ротацию. Где
+        // время создания не хранится, атрибут возвращает время изменения.
+        m_fileCreated = m_fileBytes == 0 ? System.currentTimeMillis()
+            : Files.readAttributes(m_current, BasicFileAttributes.class).creationTime().toMillis();
+    }
+
+    private boolean rotationDue()
+    {
+        return m_rotationMillis > 0 && m_channel != null && m_fileBytes > 0
+            && System.currentTimeMillis() - m_fileCreated >= m_rotationMillis;
+    }
+
+    private void rotate() throws IOException
+    {
+        flush();
+        closeChannel();
+        if (!Files.exists(m_current))
+        {
+            return;
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        Path rotated = m_directory.resolve(m_baseName + "-" + stamp + ".log");
+        for (int i = 1; Files.exists(rotated) || Files.exists(gzipPath(rotated)); ++i)
+        {
+            rotated = m_directory.resolve(m_baseName + "-" + stamp + "-" + i + ".log");
+        }
+        Files.move(m_current, rotated);
+        m_fileBytes = 0;
+        if (m_compressor != null)
+        {
+            Path file = rotated;
+            m_compressor.execute(() -> compress(file));
+        }
+    }
+
+    private static Path gzipPath(Path file)
+    {
+        return file.resolveSibling(file.getFileName() + ".gz");
+    }
+
+    private static void compress(Path file)
+    {
+        Path target = gzipPath(file);
+        try
+        {
+            try (InputStream in = Files.newInputStream(file);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(target), bufferBytes))
+            {
+                byte[] chunk = new byte[bufferBytes];
+                int read;
+                while ((read = in.read(chunk)) > 0)
+                {
+                    out.write(chunk, 0, read);
+                }
+            }
+            Files.delete(file);
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+    private void closeChannel()
+    {
+        if (m_channel == null)
+        {
+            return;
+        }
+        try
+        {
+            m_channel.close();
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        m_channel = null;
+    }
+}
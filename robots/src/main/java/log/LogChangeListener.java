@@ -2,5 +2,9 @@ package log;
 
 public interface LogChangeListener
 {
-    public void onLogChanged(); 
+    /**
+     * В лог добавлены сообщения с номерами [fromSequence, toSequence).
+     * Вызывается в потоке рассылки, а не в потоке, писавшем в лог.
+     */
+    public void onLogChanged(long fromSequence, long toSequence); 
 }
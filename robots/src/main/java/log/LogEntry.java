@@ -1,24 +1,128 @@
 package log;
 
+/**
+ * Сообщение лога: время System.nanoTime(), номер потока, уровень, шаблон и
+ * до двух числовых аргументов. Текст собирается из шаблона только при
+ * первом getMessage(): пока сообщение никто не читает, строка не строится.
+ * Каждое "{}" в шаблоне заменяется очередным аргументом.
+ *
+ * Внутри LogWindowSource записи не хранятся - там переиспользуемые ячейки,
+ * а LogEntry получает копию ячейки. Читатель, которому не нужна новая
+ * копия на каждое сообщение, может передавать в LogWindowSource.read()
+ * один и тот же экземпляр.
+ */
 public class LogEntry
 {
+    static final int argCountMask = 3;
+    static final int firstDouble = 4;
+    static final int secondDouble = 8;
+
+    private long m_nanoTime;
+    private long m_threadId;
     private LogLevel m_logLevel;
+    private String m_template;
+    private int m_argKinds;
+    private long m_firstArg;
+    private long m_secondArg;
     private String m_strMessage;
-    
+
+    /**
+     * Пустая запись для LogWindowSource.read().
+     */
+    public LogEntry()
+    {
+    }
+
     public LogEntry(LogLevel logLevel, String strMessage)
     {
+        set(System.nanoTime(), Thread.currentThread().getId(), logLevel, strMessage, 0, 0, 0);
         m_strMessage = strMessage;
+    }
+
+    void set(long nanoTime, long threadId, LogLevel logLevel, String template,
+        int argKinds, long firstArg, long secondArg)
+    {
+        m_nanoTime = nanoTime;
+        m_threadId = threadId;
         m_logLevel = logLevel;
+        m_template = template;
+        m_argKinds = argKinds;
+        m_firstArg = firstArg;
+        m_secondArg = secondArg;
+        m_strMessage = null;
+    }
+
+    public long getNanoTime()
+    {
+        return m_nanoTime;
+    }
+
+    public long getThreadId()
+    {
+        return m_threadId;
+    }
+
+    public String getTemplate()
+    {
+        return m_template;
     }
-    
+
     public String getMessage()
     {
+        if (m_strMessage == null)
+        {
+            if ((m_argKinds & argCountMask) == 0)
+            {
+                m_strMessage = m_template;
+            }
+            else
+            {
+                StringBuilder builder = new StringBuilder(m_template.length() + 16);
+                formatTo(builder);
+                m_strMessage = builder.toString();
+            }
+        }
         return m_strMessage;
     }
-    
+
+    /**
+     * Дописывает текст сообщения в builder, не создавая строку.
+     */
+    public void formatTo(StringBuilder builder)
+    {
+        int argCount = m_argKinds & argCountMask;
+        if (argCount == 0 || m_strMessage != null)
+        {
+            builder.append(getMessage());
+            return;
+        }
+        int arg = 0;
+        int from = 0;
+        int placeholder;
+        while (arg < argCount && (placeholder = m_template.indexOf("{}", from)) >= 0)
+        {
+            builder.append(m_template, from, placeholder);
+            appendArg(builder, arg++);
+            from = placeholder + 2;
+        }
+        builder.append(m_template, from, m_template.length());
+    }
+
+    private void appendArg(StringBuilder builder, int arg)
+    {
+        long bits = arg == 0 ? m_firstArg : m_secondArg;
+        if ((m_argKinds & (arg == 0 ? firstDouble : secondDouble)) != 0)
+        {
+            builder.append(Double.longBitsToDouble(bits));
+        }
+        else
+        {
+            builder.append(bits);
+        }
+    }
+
     public LogLevel getLevel()
     {
         return m_logLevel;
     }
 }
-
@@ -0,0 +1,10 @@
+package log;
+
+/**
+ * Решает, принять ли сообщение в LogWindowSource. Вызывается в потоке
+ * писателя до захвата номера и может его задержать.
+ */
+interface LogGate
+{
+    boolean admit(LogLevel logLevel);
+}
@@ -0,0 +1,90 @@
+package log;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Рассылает слушателям LogWindowSource уведомления об изменениях в
+ * отдельном потоке. Все сообщения, пришедшие за интервал, сливаются в
+ * одно уведомление с диапазоном новых номеров, так что слушатель
+ * вызывается не чаще раза в интервал, сколько бы сообщений ни было.
+ *
+ * Писателю достаточно вызвать signal(): это одно чтение флага, а задача
+ * ставится в очередь только первым сообщением после рассылки.
+ */
+class LogNotifier
+{
+    private final LogWindowSource m_source;
+    private final long m_intervalNanos;
+    private final AtomicBoolean m_scheduled = new AtomicBoolean();
+    private final ScheduledExecutorService m_executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "log notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // трогаются только из потока рассылки
+    private long m_notifiedSequence;
+    private long m_lastDispatch;
+
+    LogNotifier(LogWindowSource source, long intervalMillis)
+    {
+        m_source = source;
+        m_intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(intervalMillis, 0));
+        m_lastDispatch = System.nanoTime() - m_intervalNanos;
+    }
+
+    /**
+     * Сообщает, что в источнике появились сообщения. Вызывается после
+     * публикации, поэтому рассылка их обязательно увидит.
+     */
+    void signal()
+    {
+        if (m_scheduled.get() || !m_scheduled.compareAndSet(false, true))
+        {
+            return;
+        }
+        m_executor.execute(this::schedule);
+    }
+
+    private void schedule()
+    {
+        long delay = m_lastDispatch + m_intervalNanos - System.nanoTime();
+        if (delay > 0)
+        {
+            m_executor.schedule(this::dispatch, delay, TimeUnit.NANOSECONDS);
+        }
+        else
+        {
+            dispatch();
+        }
+    }
+
+    private void dispatch()
+    {
+        // флаг снимается до чтения номера: сообщение, опубликованное позже,
+        // запланирует следующую рассылку
+        m_scheduled.set(false);
+        m_lastDispatch = System.nanoTime();
+        long end = m_source.endSequence();
+        if (end <= m_notifiedSequence)
+        {
+            return;
+        }
+        long from = m_notifiedSequence;
+        m_notifiedSequence = end;
+        for (LogChangeListener listener : m_source.activeListeners())
+        {
+            try
+            {
+                listener.onLogChanged(from, end);
+            }
+            catch (RuntimeException e)
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+}
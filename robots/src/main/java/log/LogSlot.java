@@ -0,0 +1,59 @@
+package log;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Ячейка кольцевого буфера LogWindowSource. Ячейки создаются вместе с
+ * буфером и переписываются на месте, так что запись сообщения ничего не
+ * выделяет.
+ *
+ * m_sequence - номер сообщения, лежащего в ячейке, или BUSY, пока его
+ * переписывают. StampedLock нужен только читателям: validate() после
+ * копирования полей гарантирует, что поля прочитаны до проверки номера.
+ */
+final class LogSlot
+{
+    static final long BUSY = Long.MIN_VALUE;
+
+    final StampedLock m_lock = new StampedLock();
+    volatile long m_sequence;
+
+    long m_nanoTime;
+    long m_threadId;
+    LogLevel m_level;
+    String m_template;
+    int m_argKinds;
+    long m_firstArg;
+    long m_secondArg;
+
+    LogSlot(long sequence)
+    {
+        m_sequence = sequence;
+    }
+
+    /**
+     * Копирует сообщение с номером sequence в target.
+     * @return false, если ячейку уже переписали или ещё не дописали
+     */
+    boolean read(long sequence, LogEntry target)
+    {
+        if (m_sequence != sequence)
+        {
+            return false;
+        }
+        long stamp = m_lock.tryOptimisticRead();
+        long nanoTime = m_nanoTime;
+        long threadId = m_threadId;
+        LogLevel level = m_level;
+        String template = m_template;
+        int argKinds = m_argKinds;
+        long firstArg = m_firstArg;
+        long secondArg = m_secondArg;
+        if (stamp == 0 || !m_lock.validate(stamp) || m_sequence != sequence)
+        {
+            return false;
+        }
+        target.set(nanoTime, threadId, level, template, argKinds, firstArg, secondArg);
+        return true;
+    }
+}
@@ -1,34 +1,70 @@
 package log;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Что починить:
  * 1. Этот класс порождает утечку ресурсов (связанные слушатели оказываются
  * удерживаемыми в памяти)
- * 2. Этот класс хранит активные сообщения лога, но в такой реализации он 
- * их лишь накапливает. Надо же, чтобы количество сообщений в логе было ограничено 
- * величиной m_iQueueLength (т.е. реально нужна очередь сообщений 
- * ограниченного размера) 
+ *
+ * Сообщения хранятся в кольцевом буфере на m_iQueueLength ячеек (LogSlot),
+ * которые создаются один раз и дальше переписываются на месте. Каждое
+ * сообщение получает номер (sequence) и лежит в ячейке
+ * sequence % m_iQueueLength; новое сообщение затирает самое старое.
+ *
+ * Запись без блокировок: поток захватывает номер через getAndIncrement,
+ * заполняет поля ячейки и публикует её номер. Пока ячейку переписывают, на
+ * месте номера стоит BUSY, поэтому читатель, увидевший один и тот же номер
+ * до и после копирования полей, знает, что запись не подменили. Ждать
+ * писателю приходится, только если другой поток обогнал его на целый круг
+ * буфера и ещё не дописал ту же ячейку.
+ *
+ * Слушателей уведомляет LogNotifier в своём потоке, не чаще раза в
+ * интервал рассылки, поэтому append() никогда не ждёт интерфейс.
  */
 public class LogWindowSource
 {
-    private int m_iQueueLength;
-    
-    private final ConcurrentLinkedQueue<LogEntry> m_messages;
+    public static final long DEFAULT_NOTIFY_INTERVAL_MS = 16;
+
+    private final int m_iQueueLength;
+
+    private final LogSlot[] m_slots;
+    private final AtomicLong m_claimed = new AtomicLong();
+    private final AtomicLong m_cursor = new AtomicLong();
     private final ArrayList<LogChangeListener> m_listeners;
     private volatile LogChangeListener[] m_activeListeners;
-    
-    public LogWindowSource(int iQueueLength) 
+    private final LogNotifier m_notifier;
+    private volatile LogGate m_gate;
+
+    public LogWindowSource(int iQueueLength)
+    {
+        this(iQueueLength, DEFAULT_NOTIFY_INTERVAL_MS);
+    }
+
+    /**
+     * @param notifyIntervalMillis наименьший промежуток между двумя
+     * уведомлениями слушателей
+     */
+    public LogWindowSource(int iQueueLength, long notifyIntervalMillis)
     {
+        if (iQueueLength <= 0)
+        {
+            throw new IllegalArgumentException("Queue length must be positive: " + iQueueLength);
+        }
         m_iQueueLength = iQueueLength;
-        m_messages = new ConcurrentLinkedQueue<>();
+        m_slots = new LogSlot[iQueueLength];
+        // ячейка i "свободна после круга -1": первому писателю не нужно ждать
+        for (int i = 0; i < iQueueLength; ++i)
+        {
+            m_slots[i] = new LogSlot(i - (long)iQueueLength);
+        }
         m_listeners = new ArrayList<>();
+        m_notifier = new LogNotifier(this, notifyIntervalMillis);
     }
-    
+
     public void registerListener(LogChangeListener listener)
     {
         synchronized(m_listeners)
@@ -37,7 +73,7 @@ public class LogWindowSource
             m_activeListeners = null;
         }
     }
-    
+
     public void unregisterListener(LogChangeListener listener)
     {
         synchronized(m_listeners)
@@ -47,19 +83,51 @@ public class LogWindowSource
         }
     }
 
-    private void addMessage(LogEntry entry) {
-        synchronized (m_messages) {
-            if (m_messages.size() == m_iQueueLength) {
-                m_messages.poll();
-            }
-            m_messages.add(entry);
+    private void addMessage(LogLevel logLevel, String template, int argKinds, long firstArg, long secondArg)
+    {
+        long sequence = m_claimed.getAndIncrement();
+        LogSlot slot = m_slots[slotOf(sequence)];
+        long previous = sequence - m_iQueueLength;
+        while (slot.m_sequence != previous)
+        {
+            Thread.yield();
         }
+        slot.m_sequence = LogSlot.BUSY;
+        long stamp = slot.m_lock.writeLock();
+        slot.m_nanoTime = System.nanoTime();
+        slot.m_threadId = Thread.currentThread().getId();
+        slot.m_level = logLevel;
+        slot.m_template = template;
+        slot.m_argKinds = argKinds;
+        slot.m_firstArg = firstArg;
+        slot.m_secondArg = secondArg;
+        slot.m_lock.unlockWrite(stamp);
+        slot.m_sequence = sequence;
     }
-    
+
     public void append(LogLevel logLevel, String strMessage)
     {
-        LogEntry entry = new LogEntry(logLevel, strMessage);
-        addMessage(entry);
+        append(logLevel, strMessage, 0, 0, 0);
+    }
+
+    /**
+     * Сообщение по шаблону с числовыми аргументами (см. LogEntry). Аргументы
+     * double передаются битами Double.doubleToRawLongBits и отмечаются в
+     * argKinds.
+     */
+    void append(LogLevel logLevel, String template, int argKinds, long firstArg, long secondArg)
+    {
+        LogGate gate = m_gate;
+        if (gate != null && !gate.admit(logLevel))
+        {
+            return;
+        }
+        addMessage(logLevel, template, argKinds, firstArg, secondArg);
+        m_notifier.signal();
+    }
+
+    LogChangeListener[] activeListeners()
+    {
         LogChangeListener [] activeListeners = m_activeListeners;
         if (activeListeners == null)
         {
@@ -72,34 +140,127 @@ public class LogWindowSource
                 }
             }
         }
-        for (LogChangeListener listener : activeListeners)
+        return activeListeners;
+    }
+
+    void setGate(LogGate gate)
+    {
+        m_gate = gate;
+    }
+
+    /**
+     * Номер, который получит следующее сообщение. Сообщения до него могут
+     * быть ещё не опубликованы.
+     */
+    long claimedSequence()
+    {
+        return m_claimed.get();
+    }
+
+    public int capacity()
+    {
+        return m_iQueueLength;
+    }
+
+    /**
+     * Номер, следующий за последним опубликованным сообщением. Все номера
+     * меньше него уже записаны (или затёрты более новыми).
+     */
+    public long endSequence()
+    {
+        long cursor = m_cursor.get();
+        long end = cursor;
+        long claimed = m_claimed.get();
+        while (end < claimed && m_slots[slotOf(end)].m_sequence >= end)
+        {
+            end++;
+        }
+        if (end > cursor)
         {
-            listener.onLogChanged();
+            // другой читатель мог продвинуть курсор дальше - тогда он прав
+            m_cursor.compareAndSet(cursor, end);
         }
+        return end;
+    }
+
+    /**
+     * Номер самого старого сообщения, которое ещё хранится в буфере.
+     */
+    public long firstSequence()
+    {
+        return Math.max(0, endSequence() - m_iQueueLength);
     }
-    
+
     public int size()
     {
-        return m_messages.size();
+        return (int)Math.min(endSequence(), m_iQueueLength);
     }
 
-    public Iterable<LogEntry> range(int startFrom, int count)
+    /**
+     * Копия сообщения с номером sequence или null, если оно уже затёрто или
+     * ещё не опубликовано.
+     */
+    public LogEntry get(long sequence)
     {
-        if (startFrom < 0 || startFrom >= m_messages.size())
+        LogEntry entry = new LogEntry();
+        return read(sequence, entry) ? entry : null;
+    }
+
+    /**
+     * Копирует сообщение с номером sequence в target, ничего не выделяя.
+     * @return false, если сообщение уже затёрто или ещё не опубликовано
+     */
+    public boolean read(long sequence, LogEntry target)
+    {
+        return sequence >= 0 && m_slots[slotOf(sequence)].read(sequence, target);
+    }
+
+    /**
+     * Сообщения с номерами [fromSequence, fromSequence + count). Копируются
+     * только они; затёртые за время чтения пропускаются, так что результат -
+     * подряд идущие сообщения без подмен.
+     */
+    public Iterable<LogEntry> rangeOf(long fromSequence, int count)
+    {
+        long from = Math.max(fromSequence, 0);
+        long to = Math.min(fromSequence + Math.max(count, 0), endSequence());
+        if (from >= to)
         {
             return Collections.emptyList();
         }
-        ArrayList<LogEntry> messages = null;
-        int indexTo = -1;
-        synchronized (m_messages) {
-            indexTo = Math.min(startFrom + count, m_messages.size());
-            messages = new ArrayList<>(m_messages);
+        LogEntry[] messages = new LogEntry[(int)Math.min(to - from, m_iQueueLength)];
+        from = Math.max(from, to - messages.length);
+        int size = 0;
+        for (long sequence = from; sequence < to; ++sequence)
+        {
+            LogEntry entry = get(sequence);
+            if (entry != null)
+            {
+                messages[size++] = entry;
+            }
         }
-        return messages.subList(startFrom, indexTo);
+        return Arrays.asList(messages).subList(0, size);
+    }
+
+    /**
+     * Сообщения с позиции startFrom, считая от самого старого хранимого.
+     */
+    public Iterable<LogEntry> range(int startFrom, int count)
+    {
+        if (startFrom < 0 || count <= 0)
+        {
+            return Collections.emptyList();
+        }
+        return rangeOf(firstSequence() + startFrom, count);
     }
 
     public Iterable<LogEntry> all()
     {
-        return m_messages;
+        return range(0, m_iQueueLength);
+    }
+
+    private int slotOf(long sequence)
+    {
+        return (int)(sequence % m_iQueueLength);
     }
 }
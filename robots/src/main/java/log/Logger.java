@@ -1,24 +1,150 @@
 package log;
 
+/**
+ * Точка входа для записи в лог. Уровень проверяется до любой работы:
+ * сообщение ниже setLevel() стоит одного чтения volatile-поля, поэтому
+ * trace и debug можно оставлять в цикле обновления модели. Аргументы
+ * передаются примитивами в шаблон с "{}", так что строка не собирается,
+ * пока её никто не читает.
+ */
 public final class Logger
 {
+    /**
+     * Буфер должен вмещать всплеск сообщений, пока FileLogSink его не
+     * дочитал: всё, что затёрто раньше, в файл уже не попадёт.
+     */
+    private static final int defaultQueueLength = 1 << 16;
+
     private static final LogWindowSource defaultLogSource;
     static {
-        defaultLogSource = new LogWindowSource(100);
+        defaultLogSource = new LogWindowSource(defaultQueueLength);
     }
-    
+
+    private static volatile int minLevel = LogLevel.Debug.level();
+
     private Logger()
     {
     }
 
+    /**
+     * Сообщения ниже этого уровня отбрасываются сразу. По умолчанию Debug.
+     */
+    public static void setLevel(LogLevel logLevel)
+    {
+        minLevel = logLevel.level();
+    }
+
+    public static boolean isEnabled(LogLevel logLevel)
+    {
+        return logLevel.level() >= minLevel;
+    }
+
+    public static void trace(String strMessage)
+    {
+        if (LogLevel.Trace.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Trace, strMessage, 0, 0, 0);
+        }
+    }
+
+    public static void trace(String template, long arg)
+    {
+        if (LogLevel.Trace.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Trace, template, 1, arg, 0);
+        }
+    }
+
+    public static void trace(String template, double arg)
+    {
+        if (LogLevel.Trace.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Trace, template, 1 | LogEntry.firstDouble,
+                Double.doubleToRawLongBits(arg), 0);
+        }
+    }
+
+    public static void trace(String template, long first, long second)
+    {
+        if (LogLevel.Trace.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Trace, template, 2, first, second);
+        }
+    }
+
+    public static void trace(String template, double first, double second)
+    {
+        if (LogLevel.Trace.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Trace, template, 2 | LogEntry.firstDouble | LogEntry.secondDouble,
+                Double.doubleToRawLongBits(first), Double.doubleToRawLongBits(second));
+        }
+    }
+
     public static void debug(String strMessage)
     {
-        defaultLogSource.append(LogLevel.Debug, strMessage);
+        if (LogLevel.Debug.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Debug, strMessage, 0, 0, 0);
+        }
+    }
+
+    public static void debug(String template, long arg)
+    {
+        if (LogLevel.Debug.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Debug, template, 1, arg, 0);
+        }
+    }
+
+    public static void debug(String template, double arg)
+    {
+        if (LogLevel.Debug.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Debug, template, 1 | LogEntry.firstDouble,
+                Double.doubleToRawLongBits(arg), 0);
+        }
+    }
+
+    public static void debug(String template, long first, long second)
+    {
+        if (LogLevel.Debug.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Debug, template, 2, first, second);
+        }
     }
-    
+
+    public static void debug(String template, double first, double second)
+    {
+        if (LogLevel.Debug.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Debug, template, 2 | LogEntry.firstDouble | LogEntry.secondDouble,
+                Double.doubleToRawLongBits(first), Double.doubleToRawLongBits(second));
+        }
+    }
+
+    public static void info(String strMessage)
+    {
+        if (LogLevel.Info.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Info, strMessage, 0, 0, 0);
+        }
+    }
+
+    public static void warning(String strMessage)
+    {
+        if (LogLevel.Warning.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Warning, strMessage, 0, 0, 0);
+        }
+    }
+
     public static void error(String strMessage)
     {
-        defaultLogSource.append(LogLevel.Error, strMessage);
+        if (LogLevel.Error.level() >= minLevel)
+        {
+            defaultLogSource.append(LogLevel.Error, strMessage, 0, 0, 0);
+        }
     }
 
     public static LogWindowSource getDefaultLogSource()
@@ -0,0 +1,492 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Столкновения роботов между собой. Тело робота - эллипс bodyLength x
+ * bodyWidth, повёрнутый по направлению движения, как в отрисовке.
+ *
+ * Широкая фаза - сетка с клетками не меньше neighbourRadius, так что все
+ * соседи робота лежат в его клетке и восьми соседних (через края поля тоже).
+ * Узкая фаза - проверка разделяющих осей для эллипсов: оси обоих эллипсов и
+ * линия центров. Это консервативно: касание может засчитаться чуть раньше
+ * настоящего, но пересекающиеся тела не пропускаются.
+ *
+ * Пересекающиеся роботы расталкиваются, каждый на половину глубины
+ * проникновения. Стоящего робота (в цели или остановившегося) едущий не
+ * толкает - отходит сам на всю глубину, а если упёрся в него по дороге к
+ * цели или уже в пределах длины тела от неё, останавливается тоже
+ * (RobotStore.m_settled). Так толпа вокруг общей цели замирает, а не
+ * толкается вечно. Остановка держится, только пока причина на месте: если
+ * стоявший впереди сосед поехал (или робот у цели ни с кем не соприкасается),
+ * робот снова трогается, поэтому очередь в проходе рассасывается вслед за
+ * первым. Кроме того, едущий робот, который за avoidanceHorizon
+ * сблизится с соседом ближе avoidanceClearance, заранее уходит вбок; едущий
+ * сосед считает то же самое со своей стороны и уходит в другую сторону.
+ *
+ * Каждый робот пишет только собственную поправку, поэтому роботы делятся
+ * на куски и считаются в ForkJoinPool, как в ParallelStepper.
+ */
+public class CollisionSystem
+{
+    public static final double bodyLength = 30;
+    public static final double bodyWidth = 10;
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private static final double semiMajor = bodyLength / 2;
+    private static final double semiMinor = bodyWidth / 2;
+    private static final double neighbourRadius = 40;
+    private static final double avoidanceClearance = semiMajor + semiMinor;
+    private static final double avoidanceHorizon = 500;
+    private static final double avoidanceGain = 0.5;
+
+    /** поправка меньше этой за движение не считается */
+    private static final double displacementTolerance = 0.01;
+    /** соседи, чьи центры ближе bodyLength + contactMargin, держат остановку */
+    private static final double contactMargin = 2;
+    /** сосед впереди, если он не дальше 45 градусов от направления на цель (cos^2) */
+    private static final double aheadCos2 = 0.5;
+
+    private final ForkJoinPool m_pool;
+    private final int m_chunkSize;
+    private RobotStore m_store;
+    private int m_displaced;
+
+    private int m_columns;
+    private int m_rows;
+    private double m_cellWidth;
+    private double m_cellHeight;
+    private int[] m_cellStart = new int[1];
+    private int[] m_cursor = new int[0];
+    private int[] m_cellOf = new int[0];
+    private int[] m_items = new int[0];
+    private double[] m_slotX = new double[0];
+    private double[] m_slotY = new double[0];
+    private double[] m_slotCos = new double[0];
+    private double[] m_slotSin = new double[0];
+    private double[] m_slotVelocityX = new double[0];
+    private double[] m_slotVelocityY = new double[0];
+
+    private double[] m_correctionX = new double[0];
+    private double[] m_correctionY = new double[0];
+
+    public CollisionSystem()
+    {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public CollisionSystem(ForkJoinPool pool, int chunkSize)
+    {
+        if (chunkSize <= 0)
+        {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        m_pool = pool;
+        m_chunkSize = chunkSize;
+    }
+
+    /**
+     * Сколько роботов сдвинул последний resolve() больше чем на
+     * displacementTolerance.
+     */
+    public int getDisplacedOnLastResolve()
+    {
+        return m_displaced;
+    }
+
+    /**
+     * Расталкивает пересекающихся роботов и уводит сближающихся друг от
+     * друга. Вызывается после шага модели, когда previous* уже хранят
+     * положения до шага.
+     * @return количество роботов, которые касались хотя бы одного соседа
+     */
+    public int resolve(RobotStore store, double width, double height, double duration)
+    {
+        int size = store.size();
+        m_displaced = 0;
+        if (size < 2 || width <= 0 || height <= 0)
+        {
+            return 0;
+        }
+        m_store = store;
+        buildGrid(store, size, width, height, duration);
+        if (m_correctionX.length < size)
+        {
+            m_correctionX = new double[size];
+            m_correctionY = new double[size];
+        }
+        int contacts;
+        if (size <= m_chunkSize)
+        {
+            contacts = computeCorrections(0, size, width, height, duration);
+        }
+        else
+        {
+            contacts = m_pool.invoke(new CorrectionTask(0, size, width, height, duration));
+        }
+        double[] positionX = store.m_positionX;
+        double[] positionY = store.m_positionY;
+        int displaced = 0;
+        for (int i = 0; i < size; ++i)
+        {
+            double correctionX = m_correctionX[i];
+            double correctionY = m_correctionY[i];
+            if (correctionX != 0 || correctionY != 0)
+            {
+                positionX[i] = Kinematics.applyMod(positionX[i] + correctionX, width);
+                positionY[i] = Kinematics.applyMod(positionY[i] + correctionY, height);
+                if (correctionX * correctionX + correctionY * correctionY
+                    > displacementTolerance * displacementTolerance)
+                {
+                    displaced++;
+                }
+            }
+        }
+        m_displaced = displaced;
+        m_store = null;
+        return contacts;
+    }
+
+    /**
+     * Раскладывает роботов по клеткам сортировкой подсчётом. Всё, что нужно
+     * узкой фазе (координаты, cos/sin направления, скорость), копируется в
+     * порядке клеток: перебор соседей читает память подряд, а тригонометрия
+     * считается один раз на робота, а не на пару.
+     */
+    private void buildGrid(RobotStore store, int size, double width, double height, double duration)
+    {
+        // клеток столько, чтобы каждая была не уже neighbourRadius; последняя
+        // не бывает узкой, и соседи через край поля тоже в соседней клетке
+        m_columns = Math.max(1, (int)(width / neighbourRadius));
+        m_rows = Math.max(1, (int)(height / neighbourRadius));
+        m_cellWidth = width / m_columns;
+        m_cellHeight = height / m_rows;
+        int cells = m_columns * m_rows;
+        if (m_cellStart.length < cells + 1)
+        {
+            m_cellStart = new int[cells + 1];
+            m_cursor = new int[cells];
+        }
+        if (m_items.length < size)
+        {
+            m_cellOf = new int[size];
+            m_items = new int[size];
+            m_slotX = new double[size];
+            m_slotY = new double[size];
+            m_slotCos = new double[size];
+            m_slotSin = new double[size];
+            m_slotVelocityX = new double[size];
+            m_slotVelocityY = new double[size];
+        }
+        double[] positionX = store.m_positionX;
+        double[] positionY = store.m_positionY;
+        double[] direction = store.m_direction;
+        double[] previousX = store.m_previousX;
+        double[] previousY = store.m_previousY;
+        Arrays.fill(m_cellStart, 0, cells + 1, 0);
+        for (int i = 0; i < size; ++i)
+        {
+            int cell = row(positionY[i]) * m_columns + column(positionX[i]);
+            m_cellOf[i] = cell;
+            m_cellStart[cell + 1]++;
+        }
+        for (int cell = 0; cell < cells; ++cell)
+        {
+            m_cellStart[cell + 1] += m_cellStart[cell];
+        }
+        System.arraycopy(m_cellStart, 0, m_cursor, 0, cells);
+        for (int i = 0; i < size; ++i)
+        {
+            int slot = m_cursor[m_cellOf[i]]++;
+            m_items[slot] = i;
+            m_slotX[slot] = positionX[i];
+            m_slotY[slot] = positionY[i];
+            m_slotCos[slot] = Math.cos(direction[i]);
+            m_slotSin[slot] = Math.sin(direction[i]);
+            m_slotVelocityX[slot] = torusDelta(positionX[i] - previousX[i], width) / duration;
+            m_slotVelocityY[slot] = torusDelta(positionY[i] - previousY[i], height) / duration;
+        }
+    }
+
+    private int column(double x)
+    {
+        return Math.min(Math.max((int)(x / m_cellWidth), 0), m_columns - 1);
+    }
+
+    private int row(double y)
+    {
+        return Math.min(Math.max((int)(y / m_cellHeight), 0), m_rows - 1);
+    }
+
+    /**
+     * Поправки для роботов, лежащих в слотах [from, to) сетки.
+     * @return сколько из них касаются соседей
+     */
+    private int computeCorrections(int from, int to, double width, double height, double duration)
+    {
+        double[] separation = new double[2];
+        // соседние клетки без повторов, если клеток по оси меньше трёх
+        int columnSpan = Math.min(3, m_columns);
+        int rowSpan = Math.min(3, m_rows);
+        int firstColumnOffset = m_columns >= 3 ? -1 : 0;
+        int firstRowOffset = m_rows >= 3 ? -1 : 0;
+        double maxShift = Kinematics.maxVelocity * duration * avoidanceGain;
+        double[] targetX = m_store.m_targetX;
+        double[] targetY = m_store.m_targetY;
+        boolean[] settled = m_store.m_settled;
+        double[] settledTargetX = m_store.m_settledTargetX;
+        double[] settledTargetY = m_store.m_settledTargetY;
+        int contacts = 0;
+        for (int self = from; self < to; ++self)
+        {
+            int i = m_items[self];
+            double x = m_slotX[self];
+            double y = m_slotY[self];
+            double cos = m_slotCos[self];
+            double sin = m_slotSin[self];
+            double velocityX = m_slotVelocityX[self];
+            double velocityY = m_slotVelocityY[self];
+            boolean moving = velocityX != 0 || velocityY != 0;
+            // цель может смениться из другого потока: остановка запоминает ту,
+            // по которой решали
+            double robotTargetX = targetX[i];
+            double robotTargetY = targetY[i];
+            double toTargetX = torusDelta(robotTargetX - x, width);
+            double toTargetY = torusDelta(robotTargetY - y, height);
+            double toTarget2 = toTargetX * toTargetX + toTargetY * toTargetY;
+            boolean nearTarget = toTarget2 < bodyLength * bodyLength;
+            boolean settle = false;
+            boolean blocked = false;
+            double pushX = 0;
+            double pushY = 0;
+            double avoidX = 0;
+            double avoidY = 0;
+            boolean touched = false;
+            int cell = m_cellOf[i];
+            int column = cell % m_columns;
+            int row = cell / m_columns;
+            for (int dr = 0; dr < rowSpan; ++dr)
+            {
+                int neighbourRow = Math.floorMod(row + firstRowOffset + dr, m_rows);
+                for (int dc = 0; dc < columnSpan; ++dc)
+                {
+                    int neighbourCell = neighbourRow * m_columns
+                        + Math.floorMod(column + firstColumnOffset + dc, m_columns);
+                    for (int slot = m_cellStart[neighbourCell]; slot < m_cellStart[neighbourCell + 1]; ++slot)
+                    {
+                        if (slot == self)
+                        {
+                            continue;
+                        }
+                        double offsetX = torusDelta(m_slotX[slot] - x, width);
+                        double offsetY = torusDelta(m_slotY[slot] - y, height);
+                        double distance2 = offsetX * offsetX + offsetY * offsetY;
+                        if (distance2 > neighbourRadius * neighbourRadius)
+                        {
+                            continue;
+                        }
+                        // стоящий (остановившийся или в своей цели) сосед впереди, в пределах
+                        // 45 градусов от направления на цель: соседи бок о бок
+                        // не должны держать друг друга
+                        double ahead = offsetX * toTargetX + offsetY * toTargetY;
+                        boolean standingAhead = m_slotVelocityX[slot] == 0 && m_slotVelocityY[slot] == 0
+                            && ahead > 0 && ahead * ahead > aheadCos2 * distance2 * toTarget2;
+                        if (distance2 < (bodyLength + contactMargin) * (bodyLength + contactMargin)
+                            && (nearTarget || standingAhead))
+                        {
+                            blocked = true;
+                        }
+                        if (distance2 == 0)
+                        {
+                            // центры совпали - направления нет, разводим по x по номерам
+                            touched = true;
+                            pushX += (i < m_items[slot] ? -semiMinor : semiMinor) / 2;
+                            continue;
+                        }
+                        double penetration = distance2 > bodyLength * bodyLength ? 0
+                            : penetration(offsetX, offsetY, cos, sin, m_slotCos[slot], m_slotSin[slot], separation);
+                        if (penetration > 0)
+                        {
+                            touched = true;
+                            boolean neighbourMoving = m_slotVelocityX[slot] != 0 || m_slotVelocityY[slot] != 0;
+                            if (!moving && neighbourMoving)
+                            {
+                                continue;
+                            }
+                            double share = moving && !neighbourMoving ? 1 : 0.5;
+                            pushX -= separation[0] * penetration * share;
+                            pushY -= separation[1] * penetration * share;
+                            if (moving && (nearTarget || standingAhead))
+                            {
+                                settle = true;
+                            }
+                            continue;
+                        }
+                        if (!moving)
+                        {
+                            // стоящий держит место: обходить его - дело едущего
+                            continue;
+                        }
+                        double relativeX = velocityX - m_slotVelocityX[slot];
+                        double relativeY = velocityY - m_slotVelocityY[slot];
+                        double closing2 = relativeX * relativeX + relativeY * relativeY;
+                        if (closing2 == 0)
+                        {
+                            continue;
+                        }
+                        double timeToClosest = (offsetX * relativeX + offsetY * relativeY) / closing2;
+                        if (timeToClosest <= 0 || timeToClosest > avoidanceHorizon)
+                        {
+                            continue;
+                        }
+                        // куда окажется сосед относительно робота в момент наибольшего сближения
+                        double missX = offsetX - relativeX * timeToClosest;
+                        double missY = offsetY - relativeY * timeToClosest;
+                        double miss = Math.sqrt(missX * missX + missY * missY);
+                        if (miss >= avoidanceClearance)
+                        {
+                            continue;
+                        }
+                        if (miss < 1e-9)
+                        {
+                            // лоб в лоб: каждый уходит вправо от линии на соседа
+                            missX = -offsetY;
+                            missY = offsetX;
+                            miss = Math.sqrt(distance2);
+                        }
+                        double urgency = (1 - miss / avoidanceClearance) * (1 - timeToClosest / avoidanceHorizon);
+                        avoidX -= missX / miss * urgency;
+                        avoidY -= missY / miss * urgency;
+                    }
+                }
+            }
+            double avoid = Math.sqrt(avoidX * avoidX + avoidY * avoidY);
+            if (avoid > 1)
+            {
+                avoidX /= avoid;
+                avoidY /= avoid;
+            }
+            m_correctionX[i] = pushX + avoidX * maxShift;
+            m_correctionY[i] = pushY + avoidY * maxShift;
+            if (touched)
+            {
+                contacts++;
+            }
+            if (settle)
+            {
+                settled[i] = true;
+                settledTargetX[i] = robotTargetX;
+                settledTargetY[i] = robotTargetY;
+            }
+            else if (settled[i] && !blocked)
+            {
+                settled[i] = false;
+            }
+        }
+        return contacts;
+    }
+
+    private static double torusDelta(double delta, double period)
+    {
+        if (delta > period / 2)
+        {
+            return delta - period;
+        }
+        if (delta < -period / 2)
+        {
+            return delta + period;
+        }
+        return delta;
+    }
+
+    /**
+     * Глубина пересечения двух эллипсов по разделяющим осям. Второй эллипс
+     * сдвинут на (offsetX, offsetY) относительно первого, сдвиг не нулевой.
+     * @param separation сюда пишется единичная ось наименьшего пересечения,
+     *                   направленная от первого эллипса ко второму
+     * @return глубина пересечения или 0, если нашлась разделяющая ось
+     */
+    static double penetration(double offsetX, double offsetY,
+        double cos1, double sin1, double cos2, double sin2, double[] separation)
+    {
+        double best = Double.POSITIVE_INFINITY;
+        double length = Math.sqrt(offsetX * offsetX + offsetY * offsetY);
+        for (int axis = 0; axis < 5; ++axis)
+        {
+            double nx;
+            double ny;
+            switch (axis)
+            {
+                case 0: nx = cos1; ny = sin1; break;
+                case 1: nx = -sin1; ny = cos1; break;
+                case 2: nx = cos2; ny = sin2; break;
+                case 3: nx = -sin2; ny = cos2; break;
+                default:
+                    nx = offsetX / length;
+                    ny = offsetY / length;
+                    break;
+            }
+            double projected = offsetX * nx + offsetY * ny;
+            double overlap = projectedRadius(nx, ny, cos1, sin1)
+                + projectedRadius(nx, ny, cos2, sin2) - Math.abs(projected);
+            if (overlap <= 0)
+            {
+                return 0;
+            }
+            if (overlap < best)
+            {
+                best = overlap;
+                double sign = projected < 0 ? -1 : 1;
+                separation[0] = nx * sign;
+                separation[1] = ny * sign;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Полуширина проекции эллипса тела на единичную ось (nx, ny).
+     */
+    private static double projectedRadius(double nx, double ny, double cos, double sin)
+    {
+        double alongMajor = nx * cos + ny * sin;
+        double alongMinor = -nx * sin + ny * cos;
+        return Math.sqrt(semiMajor * semiMajor * alongMajor * alongMajor
+            + semiMinor * semiMinor * alongMinor * alongMinor);
+    }
+
+    private class CorrectionTask extends RecursiveTask<Integer>
+    {
+        private final int m_from;
+        private final int m_to;
+        private final double m_width;
+        private final double m_height;
+        private final double m_duration;
+
+        CorrectionTask(int from, int to, double width, double height, double duration)
+        {
+            m_from = from;
+            m_to = to;
+            m_width = width;
+            m_height = height;
+            m_duration = duration;
+        }
+
+        @Override
+        protected Integer compute()
+        {
+            if (m_to - m_from <= m_chunkSize)
+            {
+                return computeCorrections(m_from, m_to, m_width, m_height, m_duration);
+            }
+            int middle = (m_from + m_to) >>> 1;
+            CorrectionTask left = new CorrectionTask(m_from, middle, m_width, m_height, m_duration);
+            CorrectionTask right = new CorrectionTask(middle, m_to, m_width, m_height, m_duration);
+            left.fork();
+            int contactsRight = right.compute();
+            return left.join() + contactsRight;
+        }
+    }
+}
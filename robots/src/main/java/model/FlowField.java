@@ -0,0 +1,248 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Поле направлений к одной цели для всей сетки ObstacleMap.
+ *
+ * Поле интеграции - стоимость пути от каждой клетки до клетки цели (прямой
+ * шаг 10, диагональный 14, углы препятствий не срезаются), считается
+ * алгоритмом Дейкстры с корзинами (Dial) за один проход по клеткам. Поле
+ * направлений хранит для каждой клетки соседнюю клетку с наименьшей
+ * стоимостью, так что роботу достаточно прочитать одно число.
+ *
+ * Поле неизменяемо после build(), его можно читать из любого потока.
+ */
+public final class FlowField
+{
+    public static final int GOAL = -1;
+    public static final int UNREACHABLE = -2;
+
+    private static final int straightCost = 10;
+    private static final int diagonalCost = 14;
+    private static final int[] stepX = {1, -1, 0, 0, 1, 1, -1, -1};
+    private static final int[] stepY = {0, 0, 1, -1, 1, -1, 1, -1};
+
+    private final ObstacleMap m_map;
+    private final int m_columns;
+    private final int m_rows;
+    private final int m_goalColumn;
+    private final int m_goalRow;
+    private final int[] m_cost;
+    private final int[] m_next;
+
+    private FlowField(ObstacleMap map, int goalColumn, int goalRow)
+    {
+        m_map = map;
+        m_columns = map.getColumns();
+        m_rows = map.getRows();
+        m_goalColumn = goalColumn;
+        m_goalRow = goalRow;
+        m_cost = new int[m_columns * m_rows];
+        m_next = new int[m_columns * m_rows];
+    }
+
+    /**
+     * Строит поле по снимку карты.
+     */
+    public static FlowField build(ObstacleMap snapshot, int goalColumn, int goalRow)
+    {
+        FlowField field = new FlowField(snapshot, goalColumn, goalRow);
+        field.integrate();
+        field.computeDirections();
+        return field;
+    }
+
+    public ObstacleMap getMap()
+    {
+        return m_map;
+    }
+
+    public long getMapVersion()
+    {
+        return m_map.getVersion();
+    }
+
+    public int getGoalColumn()
+    {
+        return m_goalColumn;
+    }
+
+    public int getGoalRow()
+    {
+        return m_goalRow;
+    }
+
+    /**
+     * Стоимость пути от клетки до цели или Integer.MAX_VALUE, если цель
+     * из неё недостижима.
+     */
+    public int costAt(int column, int row)
+    {
+        return m_cost[row * m_columns + column];
+    }
+
+    /**
+     * Номер следующей клетки на пути к цели (row * columns + column),
+     * GOAL для самой цели или UNREACHABLE. Для занятой клетки - ближайшая
+     * к цели свободная соседняя.
+     */
+    public int nextCell(int cell)
+    {
+        return m_next[cell];
+    }
+
+    public int cellAt(double x, double y)
+    {
+        return m_map.rowOf(y) * m_columns + m_map.columnOf(x);
+    }
+
+    public double cellCenterX(int cell)
+    {
+        return m_map.cellCenterX(cell % m_columns);
+    }
+
+    public double cellCenterY(int cell)
+    {
+        return m_map.cellCenterY(cell / m_columns);
+    }
+
+    private boolean canStep(int column, int row, int direction)
+    {
+        int dx = stepX[direction];
+        int dy = stepY[direction];
+        if (m_map.blockedUnsafe(column + dx, row + dy))
+        {
+            return false;
+        }
+        return dx == 0 || dy == 0
+            || !m_map.blockedUnsafe(column + dx, row) && !m_map.blockedUnsafe(column, row + dy);
+    }
+
+    /**
+     * Дейкстра с корзинами: веса рёбер не больше diagonalCost, поэтому
+     * хватает diagonalCost + 1 корзин по кругу, а очередь с приоритетом
+     * не нужна.
+     */
+    private void integrate()
+    {
+        Arrays.fill(m_cost, Integer.MAX_VALUE);
+        if (m_map.blockedUnsafe(m_goalColumn, m_goalRow))
+        {
+            return;
+        }
+        int bucketCount = diagonalCost + 1;
+        int[][] buckets = new int[bucketCount][16];
+        int[] bucketSize = new int[bucketCount];
+        int goal = m_goalRow * m_columns + m_goalColumn;
+        m_cost[goal] = 0;
+        buckets[0][bucketSize[0]++] = goal;
+        int pending = 1;
+        for (int cost = 0; pending > 0; ++cost)
+        {
+            int bucket = cost % bucketCount;
+            for (int i = 0; i < bucketSize[bucket]; ++i)
+            {
+                int cell = buckets[bucket][i];
+                pending--;
+                if (m_cost[cell] != cost)
+                {
+                    continue;
+                }
+                int column = cell % m_columns;
+                int row = cell / m_columns;
+                for (int direction = 0; direction < stepX.length; ++direction)
+                {
+                    if (!canStep(column, row, direction))
+                    {
+                        continue;
+                    }
+                    int neighbour = cell + stepY[direction] * m_columns + stepX[direction];
+                    int neighbourCost = cost + (direction < 4 ? straightCost : diagonalCost);
+                    if (neighbourCost < m_cost[neighbour])
+                    {
+                        m_cost[neighbour] = neighbourCost;
+                        int target = neighbourCost % bucketCount;
+                        if (bucketSize[target] == buckets[target].length)
+                        {
+                            buckets[target] = Arrays.copyOf(buckets[target], bucketSize[target] * 2);
+                        }
+                        buckets[target][bucketSize[target]++] = neighbour;
+                        pending++;
+                    }
+                }
+            }
+            bucketSize[bucket] = 0;
+        }
+    }
+
+    private void computeDirections()
+    {
+        for (int row = 0; row < m_rows; ++row)
+        {
+            for (int column = 0; column < m_columns; ++column)
+            {
+                int cell = row * m_columns + column;
+                if (m_map.blockedUnsafe(column, row))
+                {
+                    m_next[cell] = escape(column, row);
+                    continue;
+                }
+                if (m_cost[cell] == Integer.MAX_VALUE)
+                {
+                    m_next[cell] = UNREACHABLE;
+                    continue;
+                }
+                if (m_cost[cell] == 0)
+                {
+                    m_next[cell] = GOAL;
+                    continue;
+                }
+                int best = UNREACHABLE;
+                long bestCost = Long.MAX_VALUE;
+                for (int direction = 0; direction < stepX.length; ++direction)
+                {
+                    if (!canStep(column, row, direction))
+                    {
+                        continue;
+                    }
+                    int neighbour = cell + stepY[direction] * m_columns + stepX[direction];
+                    long cost = (long)m_cost[neighbour] + (direction < 4 ? straightCost : diagonalCost);
+                    if (cost < bestCost)
+                    {
+                        bestCost = cost;
+                        best = neighbour;
+                    }
+                }
+                m_next[cell] = best;
+            }
+        }
+    }
+
+    /**
+     * Робот может оказаться внутри препятствия (кинематика о препятствиях
+     * не знает). Из такой клетки направление ведёт в соседнюю свободную
+     * клетку с наименьшей стоимостью.
+     */
+    private int escape(int column, int row)
+    {
+        int best = UNREACHABLE;
+        int bestCost = Integer.MAX_VALUE;
+        for (int direction = 0; direction < stepX.length; ++direction)
+        {
+            int neighbourColumn = column + stepX[direction];
+            int neighbourRow = row + stepY[direction];
+            if (m_map.blockedUnsafe(neighbourColumn, neighbourRow))
+            {
+                continue;
+            }
+            int neighbour = neighbourRow * m_columns + neighbourColumn;
+            if (m_cost[neighbour] < bestCost)
+            {
+                bestCost = m_cost[neighbour];
+                best = neighbour;
+            }
+        }
+        return best;
+    }
+}
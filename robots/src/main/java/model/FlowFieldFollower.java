@@ -0,0 +1,73 @@
+package model;
+
+/**
+ * Ведёт всех роботов к общей цели по одному FlowField: на каждом тике
+ * робот читает направление из клетки, где стоит, и проходит по полю
+ * lookahead клеток вперёд, чтобы не дёргаться на каждой границе клетки.
+ * Стоимость на робота постоянна и не зависит от размера флота.
+ *
+ * setGoal() вызывается из любого потока, update() - только из потока модели.
+ * Поле запрашивается только из update(): пока навигацией занимается
+ * PathFollower, клики и правки карты ничего не перестраивают.
+ */
+class FlowFieldFollower
+{
+    private static final int lookahead = 3;
+
+    private final FlowFieldGenerator m_generator;
+    private volatile double m_goalX;
+    private volatile double m_goalY;
+
+    FlowFieldFollower(FlowFieldGenerator generator, double goalX, double goalY)
+    {
+        m_generator = generator;
+        setGoal(goalX, goalY);
+    }
+
+    void setGoal(double x, double y)
+    {
+        m_goalX = x;
+        m_goalY = y;
+    }
+
+    void update(RobotStore store)
+    {
+        double goalX = m_goalX;
+        double goalY = m_goalY;
+        // новая цель или правка карты - поле перестраивается; запрос с той же
+        // целью и версией карты дешёвый
+        m_generator.request(goalX, goalY);
+        FlowField field = m_generator.getField();
+        int size = store.size();
+        if (field == null)
+        {
+            return;
+        }
+        int goalCell = field.getGoalRow() * field.getMap().getColumns() + field.getGoalColumn();
+        boolean currentGoal = field.cellAt(goalX, goalY) == goalCell;
+        double[] positionX = store.positionsX();
+        double[] positionY = store.positionsY();
+        for (int robot = 0; robot < size; ++robot)
+        {
+            int cell = field.cellAt(positionX[robot], positionY[robot]);
+            if (field.nextCell(cell) == FlowField.UNREACHABLE)
+            {
+                store.setTarget(robot, positionX[robot], positionY[robot]);
+                continue;
+            }
+            int target = cell;
+            for (int step = 0; step < lookahead && field.nextCell(target) >= 0; ++step)
+            {
+                target = field.nextCell(target);
+            }
+            if (target == goalCell && currentGoal)
+            {
+                store.setTarget(robot, goalX, goalY);
+            }
+            else
+            {
+                store.setTarget(robot, field.cellCenterX(target), field.cellCenterY(target));
+            }
+        }
+    }
+}
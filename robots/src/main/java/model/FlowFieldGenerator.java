@@ -0,0 +1,74 @@
+package model;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Строит FlowField к текущей цели в отдельном потоке. Пересчёт нужен
+ * только когда цель переходит в другую клетку или меняется карта: сдвиг
+ * цели внутри клетки поле не меняет. Пока новое поле строится, читатели
+ * продолжают пользоваться прежним, а устаревшие запросы пропускаются.
+ */
+public class FlowFieldGenerator
+{
+    private final ObstacleMap m_map;
+    private final AtomicLong m_generation = new AtomicLong();
+    private final ExecutorService m_executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "flow field");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile FlowField m_field;
+    private volatile int m_requestedColumn = -1;
+    private volatile int m_requestedRow = -1;
+    private volatile long m_requestedVersion = -1;
+
+    public FlowFieldGenerator(ObstacleMap map)
+    {
+        m_map = map;
+    }
+
+    public ObstacleMap getObstacleMap()
+    {
+        return m_map;
+    }
+
+    /**
+     * Последнее готовое поле или null, если ни одно ещё не построено.
+     */
+    public FlowField getField()
+    {
+        return m_field;
+    }
+
+    /**
+     * Просит поле к точке (x, y). Ничего не делает, если поле для этой
+     * клетки и текущей версии карты уже есть или строится.
+     */
+    public synchronized void request(double x, double y)
+    {
+        int column = m_map.columnOf(x);
+        int row = m_map.rowOf(y);
+        long version = m_map.getVersion();
+        if (column == m_requestedColumn && row == m_requestedRow && version == m_requestedVersion)
+        {
+            return;
+        }
+        m_requestedColumn = column;
+        m_requestedRow = row;
+        m_requestedVersion = version;
+        long current = m_generation.incrementAndGet();
+        m_executor.execute(() -> {
+            if (m_generation.get() != current)
+            {
+                return;
+            }
+            FlowField field = FlowField.build(m_map.snapshot(), column, row);
+            if (m_generation.get() == current)
+            {
+                m_field = field;
+            }
+        });
+    }
+}
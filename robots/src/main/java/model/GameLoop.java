@@ -0,0 +1,239 @@
+package model;
+
+import java.util.concurrent.locks.LockSupport;
+
+import log.Logger;
+
+/**
+ * Игровой цикл с фиксированным шагом модели вместо java.util.Timer.
+ *
+ * Время берётся из System.nanoTime(). Модель шагает ровно на stepMillis
+ * столько раз, сколько шагов накопилось с прошлой итерации, но не больше
+ * maxCatchUpSteps подряд: если машина не успевает, лишнее время
+ * отбрасывается, и модель замедляется, а не уходит в бесконечную догонялку.
+ * Отрисовка вызывается отдельно, с периодом renderPeriodMillis, и получает
+ * долю шага для интерполяции между двумя последними состояниями модели.
+ *
+ * Цикл можно останавливать и запускать снова. Поток цикла работает, пока
+ * он остаётся m_thread, а stop() дожидается его выхода, так что после
+ * stop(); start() модель никогда не шагают два потока сразу.
+ *
+ * Исключение из шага или отрисовки не останавливает цикл: оно пишется в
+ * лог (один раз на серию подряд идущих сбоев), и цикл продолжает работу.
+ */
+public class GameLoop implements Runnable
+{
+    public interface Stepper
+    {
+        public void step(double duration);
+    }
+
+    public interface Renderer
+    {
+        public void render(double interpolation);
+    }
+
+    private final String m_name;
+    private final double m_stepMillis;
+    private final long m_stepNanos;
+    private final int m_maxCatchUpSteps;
+    private volatile long m_renderPeriodNanos;
+    private final Stepper m_stepper;
+    private final Renderer m_renderer;
+
+    private volatile boolean m_running;
+    private volatile long m_simulatedNanos;
+    private volatile Thread m_thread;
+    private boolean m_stepFailing;
+    private boolean m_renderFailing;
+
+    public GameLoop(String name, double stepMillis, int maxCatchUpSteps,
+        double renderPeriodMillis, Stepper stepper, Renderer renderer)
+    {
+        if (stepMillis <= 0 || maxCatchUpSteps <= 0 || renderPeriodMillis <= 0)
+        {
+            throw new IllegalArgumentException("step, catch-up and render period must be positive");
+        }
+        m_name = name;
+        m_stepMillis = stepMillis;
+        m_stepNanos = (long)(stepMillis * 1_000_000);
+        m_maxCatchUpSteps = maxCatchUpSteps;
+        m_renderPeriodNanos = (long)(renderPeriodMillis * 1_000_000);
+        m_stepper = stepper;
+        m_renderer = renderer;
+    }
+
+    public double getStepMillis()
+    {
+        return m_stepMillis;
+    }
+
+    /**
+     * Меняет период отрисовки на ходу, например чтобы ограничить FPS.
+     */
+    public void setRenderPeriodMillis(double renderPeriodMillis)
+    {
+        if (renderPeriodMillis <= 0)
+        {
+            throw new IllegalArgumentException("render period must be positive");
+        }
+        m_renderPeriodNanos = (long)(renderPeriodMillis * 1_000_000);
+        if (m_thread != null)
+        {
+            LockSupport.unpark(m_thread);
+        }
+    }
+
+    public synchronized void start()
+    {
+        if (m_running)
+        {
+            return;
+        }
+        m_running = true;
+        m_thread = new Thread(this, m_name);
+        m_thread.setDaemon(true);
+        m_thread.start();
+    }
+
+    public synchronized void stop()
+    {
+        m_running = false;
+        Thread thread = m_thread;
+        if (thread == null)
+        {
+            return;
+        }
+        m_thread = null;
+        LockSupport.unpark(thread);
+        if (thread == Thread.currentThread())
+        {
+            // остановка из шага или отрисовки: поток выйдет сам после возврата
+            return;
+        }
+        boolean interrupted = false;
+        while (thread.isAlive())
+        {
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning()
+    {
+        return m_running;
+    }
+
+    /**
+     * Доля шага, прошедшая с момента последнего состояния модели, от 0 до 1.
+     * Отрисовка смешивает предыдущее и текущее состояния с этим весом.
+     */
+    public double getInterpolation()
+    {
+        double alpha = (double)(System.nanoTime() - m_simulatedNanos) / m_stepNanos;
+        if (alpha < 0)
+            return 0;
+        if (alpha > 1)
+            return 1;
+        return alpha;
+    }
+
+    @Override
+    public void run()
+    {
+        long now = System.nanoTime();
+        m_simulatedNanos = now;
+        long nextRender = now;
+        Thread self = Thread.currentThread();
+        while (m_thread == self)
+        {
+            now = System.nanoTime();
+            long simulated = m_simulatedNanos;
+            int steps = 0;
+            while (now - simulated >= m_stepNanos && steps < m_maxCatchUpSteps && m_thread == self)
+            {
+                step();
+                simulated += m_stepNanos;
+                m_simulatedNanos = simulated;
+                steps++;
+            }
+            if (now - simulated >= m_stepNanos)
+            {
+                simulated = now - (now - simulated) % m_stepNanos;
+                m_simulatedNanos = simulated;
+            }
+
+            long renderPeriod = m_renderPeriodNanos;
+            if (nextRender - now > renderPeriod)
+            {
+                nextRender = now + renderPeriod;
+            }
+            if (m_renderer != null && now - nextRender >= 0)
+            {
+                render();
+                nextRender += renderPeriod;
+                if (now - nextRender >= 0)
+                {
+                    nextRender = now + renderPeriod;
+                }
+            }
+
+            long wakeUp = simulated + m_stepNanos;
+            if (m_renderer != null && nextRender - wakeUp < 0)
+            {
+                wakeUp = nextRender;
+            }
+            long delay = wakeUp - System.nanoTime();
+            if (delay > 0)
+            {
+                LockSupport.parkNanos(this, delay);
+            }
+        }
+    }
+
+    private void step()
+    {
+        try
+        {
+            m_stepper.step(m_stepMillis);
+            m_stepFailing = false;
+        }
+        catch (RuntimeException e)
+        {
+            if (!m_stepFailing)
+            {
+                m_stepFailing = true;
+                Logger.error(m_name + ": ошибка в шаге модели: " + e);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void render()
+    {
+        try
+        {
+            m_renderer.render(getInterpolation());
+            m_renderFailing = false;
+        }
+        catch (RuntimeException e)
+        {
+            if (!m_renderFailing)
+            {
+                m_renderFailing = true;
+                Logger.error(m_name + ": ошибка отрисовки: " + e);
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Равномерная сетка клеток cellSize x cellSize. Перестройка - сортировка
+ * подсчётом по номеру клетки за два прохода без создания объектов; координаты
+ * складываются в порядке клеток, так что обход клетки читает память подряд.
+ * Подходит, когда роботы разбросаны по полю равномерно.
+ */
+public class GridIndex extends SpatialIndex
+{
+    public static final double DEFAULT_CELL_SIZE = 32;
+
+    private final double m_cellSize;
+    private int m_columns;
+    private int m_rows;
+    private int[] m_cellStart = new int[1];
+    private int[] m_cursor = new int[0];
+    private int[] m_cellOf = new int[0];
+    private int[] m_items = new int[0];
+    private double[] m_sortedX = new double[0];
+    private double[] m_sortedY = new double[0];
+
+    public GridIndex()
+    {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public GridIndex(double cellSize)
+    {
+        if (cellSize <= 0)
+        {
+            throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+        }
+        m_cellSize = cellSize;
+    }
+
+    @Override
+    void build()
+    {
+        m_columns = Math.max(1, (int)Math.ceil(m_width / m_cellSize));
+        m_rows = Math.max(1, (int)Math.ceil(m_height / m_cellSize));
+        int cells = m_columns * m_rows;
+        if (m_cellStart.length < cells + 1)
+        {
+            m_cellStart = new int[cells + 1];
+            m_cursor = new int[cells];
+        }
+        if (m_items.length < m_size)
+        {
+            m_cellOf = new int[m_size];
+            m_items = new int[m_size];
+            m_sortedX = new double[m_size];
+            m_sortedY = new double[m_size];
+        }
+        Arrays.fill(m_cellStart, 0, cells + 1, 0);
+        for (int i = 0; i < m_size; ++i)
+        {
+            int cell = row(m_y[i]) * m_columns + column(m_x[i]);
+            m_cellOf[i] = cell;
+            m_cellStart[cell + 1]++;
+        }
+        for (int cell = 0; cell < cells; ++cell)
+        {
+            m_cellStart[cell + 1] += m_cellStart[cell];
+        }
+        System.arraycopy(m_cellStart, 0, m_cursor, 0, cells);
+        for (int i = 0; i < m_size; ++i)
+        {
+            int slot = m_cursor[m_cellOf[i]]++;
+            m_items[slot] = i;
+            m_sortedX[slot] = m_x[i];
+            m_sortedY[slot] = m_y[i];
+        }
+    }
+
+    private int column(double x)
+    {
+        return Math.min(Math.max((int)(x / m_cellSize), 0), m_columns - 1);
+    }
+
+    private int row(double y)
+    {
+        return Math.min(Math.max((int)(y / m_cellSize), 0), m_rows - 1);
+    }
+
+    @Override
+    void visitRect(double minX, double minY, double maxX, double maxY, IntConsumer visitor)
+    {
+        int lastColumn = column(maxX);
+        int lastRow = row(maxY);
+        for (int row = row(minY); row <= lastRow; ++row)
+        {
+            int rowBase = row * m_columns;
+            int from = m_cellStart[rowBase + column(minX)];
+            int to = m_cellStart[rowBase + lastColumn + 1];
+            for (int slot = from; slot < to; ++slot)
+            {
+                double x = m_sortedX[slot];
+                double y = m_sortedY[slot];
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY)
+                {
+                    visitor.accept(m_items[slot]);
+                }
+            }
+        }
+    }
+
+    @Override
+    double rayStep()
+    {
+        return m_cellSize;
+    }
+}
@@ -0,0 +1,56 @@
+package model;
+
+/**
+ * Найденный путь: точки поворота в координатах поля, от старта к цели.
+ * Между соседними точками путь идёт по прямой через свободные клетки.
+ * Пустой путь означает, что цель недостижима.
+ */
+public final class GridPath
+{
+    public static final GridPath EMPTY = new GridPath(new double[0], new double[0]);
+
+    private final double[] m_x;
+    private final double[] m_y;
+
+    GridPath(double[] x, double[] y)
+    {
+        m_x = x;
+        m_y = y;
+    }
+
+    public int size()
+    {
+        return m_x.length;
+    }
+
+    public boolean isEmpty()
+    {
+        return m_x.length == 0;
+    }
+
+    public double getX(int index)
+    {
+        return m_x[index];
+    }
+
+    public double getY(int index)
+    {
+        return m_y[index];
+    }
+
+    /**
+     * Тот же путь, но с последней точкой ровно в (x, y), а не в центре клетки цели.
+     */
+    public GridPath withGoal(double x, double y)
+    {
+        if (isEmpty())
+        {
+            return this;
+        }
+        double[] pathX = m_x.clone();
+        double[] pathY = m_y.clone();
+        pathX[pathX.length - 1] = x;
+        pathY[pathY.length - 1] = y;
+        return new GridPath(pathX, pathY);
+    }
+}
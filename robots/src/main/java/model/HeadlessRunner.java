@@ -0,0 +1,44 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * Запуск модели без окна:
+ * java -cp Robots.jar model.HeadlessRunner [роботов] [тиков] [Sequential|Parallel] [Grid|QuadTree|-] [collisions]
+ */
+public class HeadlessRunner
+{
+    public static void main(String[] args)
+    {
+        int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        TickMode tickMode = args.length > 2 ? TickMode.valueOf(args[2]) : TickMode.Sequential;
+        SpatialIndexKind indexKind = args.length > 3 && !args[3].equals("-")
+            ? SpatialIndexKind.valueOf(args[3]) : null;
+        boolean collisions = args.length > 4 && args[4].equals("collisions");
+
+        World world = new World(1000, 1000);
+        Simulation simulation = new Simulation(world);
+        simulation.setTickMode(tickMode);
+        simulation.setSpatialIndexKind(indexKind);
+        simulation.setCollisionsEnabled(collisions);
+        Random random = new Random(42);
+        for (int i = 0; i < robotCount; ++i)
+        {
+            simulation.addRobot(random.nextDouble() * world.getWidth(),
+                random.nextDouble() * world.getHeight(),
+                random.nextDouble() * 2 * Math.PI);
+        }
+        simulation.setTarget(world.getWidth() / 2, world.getHeight() / 2);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; ++i)
+        {
+            simulation.tick(10);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%d robots, %d ticks, %s, index %s, collisions %b: %.3f ms/tick, %d in contact, %d moving",
+            robotCount, ticks, tickMode, indexKind, collisions, elapsed / 1e6 / ticks,
+            simulation.getContactsOnLastTick(), simulation.getMovedOnLastTick()));
+    }
+}
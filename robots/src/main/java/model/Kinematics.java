@@ -0,0 +1,170 @@
+package model;
+
+/**
+ * Кинематика робота, перенесённая из GameVisualizer. От исходных формул
+ * отличается только выбором стороны поворота: робот поворачивает к цели
+ * кратчайшим путём.
+ */
+public final class Kinematics
+{
+    public static final double maxVelocity = 0.1;
+    public static final double maxAngularVelocity = 0.001;
+
+    private Kinematics()
+    {
+    }
+
+    public static double distance(double x1, double y1, double x2, double y2)
+    {
+        double diffX = x1 - x2;
+        double diffY = y1 - y2;
+        return Math.sqrt(diffX * diffX + diffY * diffY);
+    }
+
+    public static double angleTo(double fromX, double fromY, double toX, double toY)
+    {
+        double diffX = toX - fromX;
+        double diffY = toY - fromY;
+
+        return asNormalizedRadians(Math.atan2(diffY, diffX));
+    }
+
+    public static double applyLimits(double value, double min, double max)
+    {
+        if (value < min)
+            return min;
+        if (value > max)
+            return max;
+        return value;
+    }
+
+    public static double applyMod(double value, double mod)
+    {
+        if (mod < 1e-9) {
+            return mod;
+        }
+        while (value < 0) {
+            value += mod;
+        }
+        while (value > mod) {
+            value -= mod;
+        }
+        return value;
+    }
+
+    public static double asNormalizedRadians(double angle)
+    {
+        while (angle < 0)
+        {
+            angle += 2*Math.PI;
+        }
+        while (angle >= 2*Math.PI)
+        {
+            angle -= 2*Math.PI;
+        }
+        return angle;
+    }
+
+    /**
+     * Значение между предыдущим и текущим состоянием для отрисовки.
+     * Если величина перескочила через край периодического диапазона
+     * (робот вышел за край поля или направление прошло через 0),
+     * берётся текущее значение.
+     */
+    public static double interpolate(double previous, double current, double alpha, double period)
+    {
+        double diff = current - previous;
+        if (Math.abs(diff) > period / 2)
+        {
+            return current;
+        }
+        return previous + diff * alpha;
+    }
+
+    /**
+     * Шаг модели для роботов с индексами [from, to): поворот к цели и
+     * движение по дуге.
+     * @return количество роботов, которые сдвинулись
+     */
+    public static int step(RobotStore store, int from, int to,
+        double width, double height, double duration)
+    {
+        double[] positionX = store.m_positionX;
+        double[] positionY = store.m_positionY;
+        double[] direction = store.m_direction;
+        double[] targetX = store.m_targetX;
+        double[] targetY = store.m_targetY;
+        double[] maxRobotVelocity = store.m_velocity;
+        double[] previousX = store.m_previousX;
+        double[] previousY = store.m_previousY;
+        double[] previousDirection = store.m_previousDirection;
+        boolean[] settled = store.m_settled;
+        double[] settledTargetX = store.m_settledTargetX;
+        double[] settledTargetY = store.m_settledTargetY;
+        // Поворот за шаг одинаков для всех роботов, поэтому sin/cos от него
+        // считаются один раз, а sin/cos нового направления - по формулам сложения
+        double turn = maxAngularVelocity * duration;
+        double sinTurn = Math.sin(turn);
+        double cosTurn = Math.cos(turn);
+        int moved = 0;
+        for (int i = from; i < to; ++i)
+        {
+            double x = positionX[i];
+            double y = positionY[i];
+            double robotDirection = direction[i];
+            previousX[i] = x;
+            previousY[i] = y;
+            previousDirection[i] = robotDirection;
+            if (settled[i] && (targetX[i] != settledTargetX[i] || targetY[i] != settledTargetY[i]))
+            {
+                // цель сменилась - остановка у прежней больше не держит
+                settled[i] = false;
+            }
+            double distance = distance(targetX[i], targetY[i], x, y);
+            if (distance < 0.5 || settled[i])
+            {
+                continue;
+            }
+            double angleToTarget = angleTo(x, y, targetX[i], targetY[i]);
+            double angularVelocity = 0;
+            double turnSign = 0;
+            // поворот в сторону меньшего угла: при сравнении углов напрямую
+            // робот, у которого цель почти по курсу через 0, крутился на месте
+            double angleDiff = asNormalizedRadians(angleToTarget - robotDirection);
+            if (angleDiff > 0 && angleDiff <= Math.PI)
+            {
+                angularVelocity = maxAngularVelocity;
+                turnSign = 1;
+            }
+            if (angleDiff > Math.PI)
+            {
+                angularVelocity = -maxAngularVelocity;
+                turnSign = -1;
+            }
+
+            double velocity = applyLimits(maxRobotVelocity[i], 0, maxVelocity);
+            double sinDirection = Math.sin(robotDirection);
+            double cosDirection = Math.cos(robotDirection);
+            double newX;
+            double newY;
+            if (turnSign == 0)
+            {
+                newX = x + velocity * duration * cosDirection;
+                newY = y + velocity * duration * sinDirection;
+            }
+            else
+            {
+                double sinNew = sinDirection * cosTurn + turnSign * cosDirection * sinTurn;
+                double cosNew = cosDirection * cosTurn - turnSign * sinDirection * sinTurn;
+                newX = x + velocity / angularVelocity * (sinNew - sinDirection);
+                newY = y - velocity / angularVelocity * (cosNew - cosDirection);
+            }
+
+            positionX[i] = applyMod(newX, width);
+            positionY[i] = applyMod(newY, height);
+            direction[i] = asNormalizedRadians(robotDirection + angularVelocity * duration);
+            moved++;
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,172 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Карта препятствий: поле разбито на клетки cellSize x cellSize, клетка
+ * либо свободна, либо занята. Каждое изменение увеличивает версию, по ней
+ * планировщик понимает, что сохранённые пути устарели.
+ *
+ * Меняют карту из окна, читает планировщик в своём потоке, поэтому
+ * планировщик работает со снимком snapshot(), а не с самой картой.
+ *
+ * Сетка выделяется с запасом, а реальное поле задаётся setExtent(): клетки,
+ * не помещающиеся в поле целиком, считаются занятыми. Иначе путь мог бы
+ * пройти за краем поля, куда робот попасть не может - World замкнут, и за
+ * краем он оказывается с другой стороны.
+ */
+public class ObstacleMap
+{
+    private final double m_cellSize;
+    private final int m_columns;
+    private final int m_rows;
+    private final boolean[] m_blocked;
+    private volatile int m_activeColumns;
+    private volatile int m_activeRows;
+    private volatile long m_version;
+
+    public ObstacleMap(double cellSize, int columns, int rows)
+    {
+        if (cellSize <= 0 || columns <= 0 || rows <= 0)
+        {
+            throw new IllegalArgumentException(
+                "bad obstacle map size: " + cellSize + " " + columns + "x" + rows);
+        }
+        m_cellSize = cellSize;
+        m_columns = columns;
+        m_rows = rows;
+        m_blocked = new boolean[columns * rows];
+        m_activeColumns = columns;
+        m_activeRows = rows;
+    }
+
+    private ObstacleMap(ObstacleMap source)
+    {
+        m_cellSize = source.m_cellSize;
+        m_columns = source.m_columns;
+        m_rows = source.m_rows;
+        m_blocked = Arrays.copyOf(source.m_blocked, source.m_blocked.length);
+        m_activeColumns = source.m_activeColumns;
+        m_activeRows = source.m_activeRows;
+        m_version = source.m_version;
+    }
+
+    public double getCellSize()
+    {
+        return m_cellSize;
+    }
+
+    public int getColumns()
+    {
+        return m_columns;
+    }
+
+    public int getRows()
+    {
+        return m_rows;
+    }
+
+    public long getVersion()
+    {
+        return m_version;
+    }
+
+    /**
+     * Ограничивает карту полем width x height. Препятствия за его
+     * пределами сохраняются и вернутся, если поле снова вырастет.
+     */
+    public synchronized void setExtent(double width, double height)
+    {
+        int columns = Math.min(Math.max((int)(width / m_cellSize), 1), m_columns);
+        int rows = Math.min(Math.max((int)(height / m_cellSize), 1), m_rows);
+        if (columns != m_activeColumns || rows != m_activeRows)
+        {
+            m_activeColumns = columns;
+            m_activeRows = rows;
+            m_version++;
+        }
+    }
+
+    public int getActiveColumns()
+    {
+        return m_activeColumns;
+    }
+
+    public int getActiveRows()
+    {
+        return m_activeRows;
+    }
+
+    public int columnOf(double x)
+    {
+        return Math.min(Math.max((int)Math.floor(x / m_cellSize), 0), m_activeColumns - 1);
+    }
+
+    public int rowOf(double y)
+    {
+        return Math.min(Math.max((int)Math.floor(y / m_cellSize), 0), m_activeRows - 1);
+    }
+
+    public double cellCenterX(int column)
+    {
+        return (column + 0.5) * m_cellSize;
+    }
+
+    public double cellCenterY(int row)
+    {
+        return (row + 0.5) * m_cellSize;
+    }
+
+    /**
+     * Занята ли клетка; всё за пределами поля считается занятым.
+     */
+    public synchronized boolean isBlocked(int column, int row)
+    {
+        return blockedUnsafe(column, row);
+    }
+
+    public synchronized void setBlocked(int column, int row, boolean blocked)
+    {
+        if (column < 0 || row < 0 || column >= m_columns || row >= m_rows)
+        {
+            return;
+        }
+        int cell = row * m_columns + column;
+        if (m_blocked[cell] != blocked)
+        {
+            m_blocked[cell] = blocked;
+            m_version++;
+        }
+    }
+
+    /**
+     * Занимает или освобождает клетку под точкой поля.
+     */
+    public void setBlockedAt(double x, double y, boolean blocked)
+    {
+        setBlocked(columnOf(x), rowOf(y), blocked);
+    }
+
+    public synchronized void clear()
+    {
+        Arrays.fill(m_blocked, false);
+        m_version++;
+    }
+
+    /**
+     * Неизменяемая копия карты с той же версией.
+     */
+    public synchronized ObstacleMap snapshot()
+    {
+        return new ObstacleMap(this);
+    }
+
+    /**
+     * Чтение без блокировки, только для снимков.
+     */
+    boolean blockedUnsafe(int column, int row)
+    {
+        return column < 0 || row < 0 || column >= m_activeColumns || row >= m_activeRows
+            || m_blocked[row * m_columns + column];
+    }
+}
@@ -0,0 +1,84 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Параллельный шаг модели: диапазон роботов делится пополам, пока не станет
+ * меньше chunkSize, и куски считаются в ForkJoinPool. Роботы на шаге не
+ * зависят друг от друга, поэтому результат побитово совпадает с
+ * последовательным шагом. step() возвращает управление только после
+ * завершения всех кусков - это и есть барьер в конце тика.
+ */
+public class ParallelStepper
+{
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private final ForkJoinPool m_pool;
+    private final int m_chunkSize;
+
+    public ParallelStepper()
+    {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelStepper(ForkJoinPool pool, int chunkSize)
+    {
+        if (chunkSize <= 0)
+        {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        m_pool = pool;
+        m_chunkSize = chunkSize;
+    }
+
+    public int getParallelism()
+    {
+        return m_pool.getParallelism();
+    }
+
+    public int step(RobotStore store, double width, double height, double duration)
+    {
+        int size = store.size();
+        if (size <= m_chunkSize)
+        {
+            return Kinematics.step(store, 0, size, width, height, duration);
+        }
+        return m_pool.invoke(new StepTask(store, 0, size, width, height, duration));
+    }
+
+    private class StepTask extends RecursiveTask<Integer>
+    {
+        private final RobotStore m_store;
+        private final int m_from;
+        private final int m_to;
+        private final double m_width;
+        private final double m_height;
+        private final double m_duration;
+
+        StepTask(RobotStore store, int from, int to, double width, double height, double duration)
+        {
+            m_store = store;
+            m_from = from;
+            m_to = to;
+            m_width = width;
+            m_height = height;
+            m_duration = duration;
+        }
+
+        @Override
+        protected Integer compute()
+        {
+            if (m_to - m_from <= m_chunkSize)
+            {
+                return Kinematics.step(m_store, m_from, m_to, m_width, m_height, m_duration);
+            }
+            int middle = (m_from + m_to) >>> 1;
+            StepTask left = new StepTask(m_store, m_from, middle, m_width, m_height, m_duration);
+            StepTask right = new StepTask(m_store, middle, m_to, m_width, m_height, m_duration);
+            left.fork();
+            int movedRight = right.compute();
+            return left.join() + movedRight;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Ведёт роботов к общей цели по путям из PathService вместо прямой
+ * наводки. Цель роботу ставится в очередную точку его пути; когда робот
+ * подходит к ней ближе waypointReach, цель переносится в следующую.
+ *
+ * setGoal() вызывается из любого потока, update() - только из потока
+ * модели. Готовые пути приходят из потока планировщика через очередь и
+ * разбираются в update(), так что массивы путей трогает один поток.
+ */
+class PathFollower
+{
+    private final PathService m_service;
+    private final double m_waypointReach;
+    private final ConcurrentLinkedQueue<PlannedPath> m_planned = new ConcurrentLinkedQueue<>();
+
+    private volatile double m_goalX;
+    private volatile double m_goalY;
+    private volatile long m_goalGeneration;
+
+    private long m_requestedGeneration = -1;
+    private long m_requestedMapVersion = -1;
+    private long m_round;
+    private int m_requestedCount;
+    private GridPath[] m_paths = new GridPath[0];
+    private int[] m_waypoint = new int[0];
+
+    PathFollower(PathService service, double goalX, double goalY)
+    {
+        m_service = service;
+        m_waypointReach = service.getObstacleMap().getCellSize();
+        m_goalX = goalX;
+        m_goalY = goalY;
+    }
+
+    void setGoal(double x, double y)
+    {
+        m_goalX = x;
+        m_goalY = y;
+        m_goalGeneration++;
+    }
+
+    void update(RobotStore store)
+    {
+        int size = store.size();
+        if (m_paths.length < size)
+        {
+            m_paths = Arrays.copyOf(m_paths, Math.max(size, m_paths.length * 2));
+            m_waypoint = Arrays.copyOf(m_waypoint, m_paths.length);
+        }
+        long generation = m_goalGeneration;
+        long mapVersion = m_service.getObstacleMap().getVersion();
+        if (generation != m_requestedGeneration || mapVersion != m_requestedMapVersion)
+        {
+            m_requestedGeneration = generation;
+            m_requestedMapVersion = mapVersion;
+            m_round++;
+            requestPaths(store, 0, size);
+        }
+        else if (m_requestedCount < size)
+        {
+            requestPaths(store, m_requestedCount, size);
+        }
+        m_requestedCount = size;
+
+        PlannedPath planned;
+        while ((planned = m_planned.poll()) != null)
+        {
+            if (planned.m_round == m_round && planned.m_robot < size)
+            {
+                m_paths[planned.m_robot] = planned.m_path;
+                m_waypoint[planned.m_robot] = planned.m_path.size() > 1 ? 1 : 0;
+                aimAtWaypoint(store, planned.m_robot);
+            }
+        }
+
+        double[] positionX = store.positionsX();
+        double[] positionY = store.positionsY();
+        for (int robot = 0; robot < size; ++robot)
+        {
+            GridPath path = m_paths[robot];
+            if (path == null || path.isEmpty())
+            {
+                continue;
+            }
+            int waypoint = m_waypoint[robot];
+            if (waypoint < path.size() - 1 && Kinematics.distance(positionX[robot], positionY[robot],
+                path.getX(waypoint), path.getY(waypoint)) < m_waypointReach)
+            {
+                m_waypoint[robot] = waypoint + 1;
+                aimAtWaypoint(store, robot);
+            }
+        }
+    }
+
+    /**
+     * Просит пути для роботов [from, to). Пока путь не найден, робот стоит
+     * на месте.
+     */
+    private void requestPaths(RobotStore store, int from, int to)
+    {
+        long round = m_round;
+        double goalX = m_goalX;
+        double goalY = m_goalY;
+        for (int robot = from; robot < to; ++robot)
+        {
+            double x = store.getPositionX(robot);
+            double y = store.getPositionY(robot);
+            m_paths[robot] = null;
+            store.setTarget(robot, x, y);
+            int index = robot;
+            m_service.request(x, y, goalX, goalY).thenAccept(path ->
+                m_planned.add(new PlannedPath(index, round, path)));
+        }
+    }
+
+    private void aimAtWaypoint(RobotStore store, int robot)
+    {
+        GridPath path = m_paths[robot];
+        if (path.isEmpty())
+        {
+            return;
+        }
+        int waypoint = m_waypoint[robot];
+        store.setTarget(robot, path.getX(waypoint), path.getY(waypoint));
+    }
+
+    private static final class PlannedPath
+    {
+        private final int m_robot;
+        private final long m_round;
+        private final GridPath m_path;
+
+        PlannedPath(int robot, long round, GridPath path)
+        {
+            m_robot = robot;
+            m_round = round;
+            m_path = path;
+        }
+    }
+}
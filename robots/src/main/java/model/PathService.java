@@ -0,0 +1,150 @@
+package model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Планирование путей в отдельном потоке. Запрос сразу возвращает
+ * CompletableFuture, сам поиск выполняет PathPlanner на снимке карты.
+ *
+ * Пути кешируются по клетке старта, клетке цели и версии карты: роботы,
+ * стоящие в одной клетке и идущие в одну цель, получают один и тот же путь,
+ * а повторный запрос, пока путь ещё ищется, ждёт того же поиска. После
+ * изменения карты старые записи просто перестают совпадать и вытесняются.
+ */
+public class PathService
+{
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private final ObstacleMap m_map;
+    private final PathPlanner m_planner = new PathPlanner();
+    private ObstacleMap m_snapshot;
+    private final ExecutorService m_executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "path planner");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Key, CompletableFuture<GridPath>> m_cache;
+
+    public PathService(ObstacleMap map)
+    {
+        this(map, DEFAULT_CACHE_SIZE);
+    }
+
+    public PathService(ObstacleMap map, int cacheSize)
+    {
+        m_map = map;
+        m_cache = new LinkedHashMap<Key, CompletableFuture<GridPath>>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<GridPath>> eldest)
+            {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public ObstacleMap getObstacleMap()
+    {
+        return m_map;
+    }
+
+    /**
+     * Путь из точки старта в точку цели. Последняя точка пути - ровно
+     * (goalX, goalY), остальные - центры клеток.
+     */
+    public CompletableFuture<GridPath> request(double startX, double startY, double goalX, double goalY)
+    {
+        Key key = new Key(m_map.columnOf(startX), m_map.rowOf(startY),
+            m_map.columnOf(goalX), m_map.rowOf(goalY), m_map.getVersion());
+        CompletableFuture<GridPath> future;
+        boolean submit = false;
+        synchronized (m_cache)
+        {
+            future = m_cache.get(key);
+            if (future == null)
+            {
+                future = new CompletableFuture<>();
+                m_cache.put(key, future);
+                submit = true;
+            }
+        }
+        if (submit)
+        {
+            CompletableFuture<GridPath> planned = future;
+            m_executor.execute(() -> plan(key, planned));
+        }
+        return future.thenApply(path -> path.withGoal(goalX, goalY));
+    }
+
+    public void clearCache()
+    {
+        synchronized (m_cache)
+        {
+            m_cache.clear();
+        }
+    }
+
+    private void plan(Key key, CompletableFuture<GridPath> future)
+    {
+        try
+        {
+            ObstacleMap snapshot = m_snapshot;
+            if (snapshot == null || snapshot.getVersion() != m_map.getVersion())
+            {
+                snapshot = m_map.snapshot();
+                m_snapshot = snapshot;
+            }
+            future.complete(m_planner.plan(snapshot,
+                key.m_startColumn, key.m_startRow, key.m_goalColumn, key.m_goalRow));
+        }
+        catch (RuntimeException e)
+        {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private static final class Key
+    {
+        private final int m_startColumn;
+        private final int m_startRow;
+        private final int m_goalColumn;
+        private final int m_goalRow;
+        private final long m_version;
+
+        Key(int startColumn, int startRow, int goalColumn, int goalRow, long version)
+        {
+            m_startColumn = startColumn;
+            m_startRow = startRow;
+            m_goalColumn = goalColumn;
+            m_goalRow = goalRow;
+            m_version = version;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key)o;
+            return m_startColumn == other.m_startColumn && m_startRow == other.m_startRow
+                && m_goalColumn == other.m_goalColumn && m_goalRow == other.m_goalRow
+                && m_version == other.m_version;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = m_startColumn;
+            result = 31 * result + m_startRow;
+            result = 31 * result + m_goalColumn;
+            result = 31 * result + m_goalRow;
+            return 31 * result + Long.hashCode(m_version);
+        }
+    }
+}
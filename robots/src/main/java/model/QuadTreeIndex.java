@@ -0,0 +1,191 @@
+package model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Квадродерево по снимку положений: узел делится на четыре, пока в нём больше
+ * leafSize роботов. Узлы и номера роботов лежат в массивах, которые
+ * переиспользуются между перестройками. В отличие от GridIndex не
+ * деградирует, когда роботы сбиваются в кучу вокруг общей цели.
+ */
+public class QuadTreeIndex extends SpatialIndex
+{
+    public static final int DEFAULT_LEAF_SIZE = 16;
+    private static final int maxDepth = 16;
+
+    private final int m_leafSize;
+    private int[] m_items = new int[0];
+    private double[] m_itemX = new double[0];
+    private double[] m_itemY = new double[0];
+
+    private int m_nodeCount;
+    private double[] m_nodeMinX = new double[64];
+    private double[] m_nodeMinY = new double[64];
+    private double[] m_nodeMaxX = new double[64];
+    private double[] m_nodeMaxY = new double[64];
+    private int[] m_nodeFirstChild = new int[64];
+    private int[] m_nodeStart = new int[64];
+    private int[] m_nodeEnd = new int[64];
+    private final int[] m_stack = new int[3 * maxDepth + 4];
+
+    public QuadTreeIndex()
+    {
+        this(DEFAULT_LEAF_SIZE);
+    }
+
+    public QuadTreeIndex(int leafSize)
+    {
+        if (leafSize <= 0)
+        {
+            throw new IllegalArgumentException("leafSize must be positive: " + leafSize);
+        }
+        m_leafSize = leafSize;
+    }
+
+    @Override
+    void build()
+    {
+        if (m_items.length < m_size)
+        {
+            m_items = new int[m_size];
+            m_itemX = new double[m_size];
+            m_itemY = new double[m_size];
+        }
+        for (int i = 0; i < m_size; ++i)
+        {
+            m_items[i] = i;
+        }
+        System.arraycopy(m_x, 0, m_itemX, 0, m_size);
+        System.arraycopy(m_y, 0, m_itemY, 0, m_size);
+        m_nodeCount = 0;
+        int root = addNode(0, 0, m_width, m_height, 0, m_size);
+        split(root, 0);
+    }
+
+    private int addNode(double minX, double minY, double maxX, double maxY, int start, int end)
+    {
+        if (m_nodeCount == m_nodeMinX.length)
+        {
+            int capacity = m_nodeCount * 2;
+            m_nodeMinX = Arrays.copyOf(m_nodeMinX, capacity);
+            m_nodeMinY = Arrays.copyOf(m_nodeMinY, capacity);
+            m_nodeMaxX = Arrays.copyOf(m_nodeMaxX, capacity);
+            m_nodeMaxY = Arrays.copyOf(m_nodeMaxY, capacity);
+            m_nodeFirstChild = Arrays.copyOf(m_nodeFirstChild, capacity);
+            m_nodeStart = Arrays.copyOf(m_nodeStart, capacity);
+            m_nodeEnd = Arrays.copyOf(m_nodeEnd, capacity);
+        }
+        int node = m_nodeCount++;
+        m_nodeMinX[node] = minX;
+        m_nodeMinY[node] = minY;
+        m_nodeMaxX[node] = maxX;
+        m_nodeMaxY[node] = maxY;
+        m_nodeFirstChild[node] = -1;
+        m_nodeStart[node] = start;
+        m_nodeEnd[node] = end;
+        return node;
+    }
+
+    private void split(int node, int depth)
+    {
+        int start = m_nodeStart[node];
+        int end = m_nodeEnd[node];
+        if (end - start <= m_leafSize || depth >= maxDepth)
+        {
+            return;
+        }
+        double minX = m_nodeMinX[node];
+        double minY = m_nodeMinY[node];
+        double maxX = m_nodeMaxX[node];
+        double maxY = m_nodeMaxY[node];
+        double midX = (minX + maxX) / 2;
+        double midY = (minY + maxY) / 2;
+        int middle = partition(start, end, midY, false);
+        int lowerMiddle = partition(start, middle, midX, true);
+        int upperMiddle = partition(middle, end, midX, true);
+        // четыре потомка создаются подряд: первый номер определяет остальные
+        int first = addNode(minX, minY, midX, midY, start, lowerMiddle);
+        addNode(midX, minY, maxX, midY, lowerMiddle, middle);
+        addNode(minX, midY, midX, maxY, middle, upperMiddle);
+        addNode(midX, midY, maxX, maxY, upperMiddle, end);
+        m_nodeFirstChild[node] = first;
+        for (int child = first; child < first + 4; ++child)
+        {
+            split(child, depth + 1);
+        }
+    }
+
+    /**
+     * Переставляет [start, end) так, что сначала идут роботы с координатой
+     * меньше pivot. Координаты переставляются вместе с номерами, чтобы
+     * перестройка и обход листьев читали память подряд.
+     * @return граница между частями
+     */
+    private int partition(int start, int end, double pivot, boolean byX)
+    {
+        double[] coordinate = byX ? m_itemX : m_itemY;
+        int left = start;
+        int right = end - 1;
+        while (left <= right)
+        {
+            if (coordinate[left] < pivot)
+            {
+                left++;
+            }
+            else
+            {
+                swap(left, right);
+                right--;
+            }
+        }
+        return left;
+    }
+
+    private void swap(int i, int j)
+    {
+        int item = m_items[i];
+        m_items[i] = m_items[j];
+        m_items[j] = item;
+        double x = m_itemX[i];
+        m_itemX[i] = m_itemX[j];
+        m_itemX[j] = x;
+        double y = m_itemY[i];
+        m_itemY[i] = m_itemY[j];
+        m_itemY[j] = y;
+    }
+
+    @Override
+    void visitRect(double minX, double minY, double maxX, double maxY, IntConsumer visitor)
+    {
+        int top = 0;
+        m_stack[top++] = 0;
+        while (top > 0)
+        {
+            int node = m_stack[--top];
+            if (m_nodeMinX[node] > maxX || m_nodeMaxX[node] < minX
+                || m_nodeMinY[node] > maxY || m_nodeMaxY[node] < minY)
+            {
+                continue;
+            }
+            int first = m_nodeFirstChild[node];
+            if (first >= 0)
+            {
+                for (int child = first; child < first + 4; ++child)
+                {
+                    m_stack[top++] = child;
+                }
+                continue;
+            }
+            for (int slot = m_nodeStart[node]; slot < m_nodeEnd[node]; ++slot)
+            {
+                double x = m_itemX[slot];
+                double y = m_itemY[slot];
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY)
+                {
+                    visitor.accept(m_items[slot]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Состояние всех роботов в параллельных массивах примитивов (structure of arrays).
+ * Робот - это индекс от 0 до size() - 1. Шаг модели проходит по массивам
+ * подряд и не создаёт объектов.
+ *
+ * Писать в хранилище должен один поток модели. Читатели сначала берут size(),
+ * а потом массивы: размер публикуется после замены массивов, поэтому его
+ * хватает для любого полученного после него массива.
+ *
+ * Робот, упёршийся в стоящего соседа по пути к цели, помечается
+ * остановившимся (m_settled) и стоит, пока ему не дадут другую цель: иначе
+ * роботы с общей целью вечно толкались бы вокруг неё. Флаг пишет только поток
+ * модели: вместе с ним запоминается цель, при которой робот остановился
+ * (m_settledTargetX/Y), и шаг модели снимает остановку, увидев другую цель.
+ * Поэтому setTarget можно звать из любого потока.
+ */
+public class RobotStore
+{
+    private static final int DEFAULT_CAPACITY = 16;
+
+    double[] m_positionX;
+    double[] m_positionY;
+    double[] m_direction;
+    double[] m_targetX;
+    double[] m_targetY;
+    double[] m_velocity;
+
+    double[] m_previousX;
+    double[] m_previousY;
+    double[] m_previousDirection;
+    boolean[] m_settled;
+    double[] m_settledTargetX;
+    double[] m_settledTargetY;
+
+    private volatile int m_size;
+    private volatile long m_version;
+
+    public RobotStore()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RobotStore(int capacity)
+    {
+        capacity = Math.max(capacity, 1);
+        m_positionX = new double[capacity];
+        m_positionY = new double[capacity];
+        m_direction = new double[capacity];
+        m_targetX = new double[capacity];
+        m_targetY = new double[capacity];
+        m_velocity = new double[capacity];
+        m_previousX = new double[capacity];
+        m_previousY = new double[capacity];
+        m_previousDirection = new double[capacity];
+        m_settled = new boolean[capacity];
+        m_settledTargetX = new double[capacity];
+        m_settledTargetY = new double[capacity];
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    public int capacity()
+    {
+        return m_positionX.length;
+    }
+
+    public synchronized int add(double x, double y, double direction, double velocity)
+    {
+        int index = m_size;
+        ensureCapacity(index + 1);
+        m_positionX[index] = x;
+        m_positionY[index] = y;
+        m_direction[index] = direction;
+        m_targetX[index] = x;
+        m_targetY[index] = y;
+        m_velocity[index] = velocity;
+        m_previousX[index] = x;
+        m_previousY[index] = y;
+        m_previousDirection[index] = direction;
+        m_settled[index] = false;
+        m_size = index + 1;
+        return index;
+    }
+
+    public synchronized void ensureCapacity(int capacity)
+    {
+        int current = m_positionX.length;
+        if (capacity <= current)
+        {
+            return;
+        }
+        int newCapacity = Math.max(capacity, current + (current >> 1));
+        m_positionX = Arrays.copyOf(m_positionX, newCapacity);
+        m_positionY = Arrays.copyOf(m_positionY, newCapacity);
+        m_direction = Arrays.copyOf(m_direction, newCapacity);
+        m_targetX = Arrays.copyOf(m_targetX, newCapacity);
+        m_targetY = Arrays.copyOf(m_targetY, newCapacity);
+        m_velocity = Arrays.copyOf(m_velocity, newCapacity);
+        m_previousX = Arrays.copyOf(m_previousX, newCapacity);
+        m_previousY = Arrays.copyOf(m_previousY, newCapacity);
+        m_previousDirection = Arrays.copyOf(m_previousDirection, newCapacity);
+        m_settled = Arrays.copyOf(m_settled, newCapacity);
+        m_settledTargetX = Arrays.copyOf(m_settledTargetX, newCapacity);
+        m_settledTargetY = Arrays.copyOf(m_settledTargetY, newCapacity);
+    }
+
+    public void setTarget(int index, double x, double y)
+    {
+        m_targetX[index] = x;
+        m_targetY[index] = y;
+    }
+
+    public void setAllTargets(double x, double y)
+    {
+        int size = m_size;
+        Arrays.fill(m_targetX, 0, size, x);
+        Arrays.fill(m_targetY, 0, size, y);
+    }
+
+    /**
+     * Остановился ли робот, упёршись в соседей по пути к цели.
+     */
+    public boolean isSettled(int index)
+    {
+        return m_settled[index];
+    }
+
+    public double[] positionsX()
+    {
+        return m_positionX;
+    }
+
+    public double[] positionsY()
+    {
+        return m_positionY;
+    }
+
+    public double[] directions()
+    {
+        return m_direction;
+    }
+
+    public double[] targetsX()
+    {
+        return m_targetX;
+    }
+
+    public double[] targetsY()
+    {
+        return m_targetY;
+    }
+
+    public double[] previousPositionsX()
+    {
+        return m_previousX;
+    }
+
+    public double[] previousPositionsY()
+    {
+        return m_previousY;
+    }
+
+    public double[] previousDirections()
+    {
+        return m_previousDirection;
+    }
+
+    public double getPositionX(int index)
+    {
+        return m_positionX[index];
+    }
+
+    public double getPositionY(int index)
+    {
+        return m_positionY[index];
+    }
+
+    public double getDirection(int index)
+    {
+        return m_direction[index];
+    }
+
+    /**
+     * Номер последнего опубликованного шага. Запись происходит после изменения
+     * массивов, поэтому чтение версии даёт читателю согласованную картину.
+     */
+    public long getVersion()
+    {
+        return m_version;
+    }
+
+    void publish()
+    {
+        m_version = m_version + 1;
+    }
+}
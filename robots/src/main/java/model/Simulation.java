@@ -0,0 +1,252 @@
+package model;
+
+/**
+ * Модель игрового поля без зависимости от Swing: набор роботов и мир,
+ * в котором они двигаются. Визуализатор только читает состояние.
+ */
+public class Simulation
+{
+    private final World m_world;
+    private final RobotStore m_robots = new RobotStore();
+    private volatile TickMode m_tickMode = TickMode.Sequential;
+    private volatile ParallelStepper m_parallelStepper;
+    private volatile int m_movedOnLastTick;
+
+    private final CollisionSystem m_collisions = new CollisionSystem();
+    private volatile boolean m_collisionsEnabled;
+    private volatile int m_contactsOnLastTick;
+
+    private static final int flowFieldMinRobots = 16;
+
+    private volatile PathFollower m_pathFollower;
+    private volatile FlowFieldFollower m_flowFieldFollower;
+    private volatile double m_targetX;
+    private volatile double m_targetY;
+
+    private volatile SpatialIndexKind m_indexKind;
+    private SpatialIndexKind m_builtIndexKind;
+    private SpatialIndex m_backIndex;
+    private volatile SpatialIndex m_index;
+
+    public Simulation(World world)
+    {
+        m_world = world;
+    }
+
+    public World getWorld()
+    {
+        return m_world;
+    }
+
+    public TickMode getTickMode()
+    {
+        return m_tickMode;
+    }
+
+    public void setTickMode(TickMode tickMode)
+    {
+        setTickMode(tickMode, new ParallelStepper());
+    }
+
+    public void setTickMode(TickMode tickMode, ParallelStepper parallelStepper)
+    {
+        m_parallelStepper = parallelStepper;
+        m_tickMode = tickMode;
+    }
+
+    /**
+     * Включает столкновения роботов между собой: пересекающиеся тела
+     * расталкиваются, сближающиеся роботы заранее расходятся.
+     */
+    public void setCollisionsEnabled(boolean enabled)
+    {
+        m_collisionsEnabled = enabled;
+    }
+
+    public boolean isCollisionsEnabled()
+    {
+        return m_collisionsEnabled;
+    }
+
+    /**
+     * Сколько роботов касалось соседей на последнем тике.
+     */
+    public int getContactsOnLastTick()
+    {
+        return m_contactsOnLastTick;
+    }
+
+    /**
+     * Включает пространственный индекс по роботам (null - выключает). Индекс
+     * перестраивается в конце каждого тика, на котором кто-то сдвинулся.
+     */
+    public void setSpatialIndexKind(SpatialIndexKind kind)
+    {
+        m_indexKind = kind;
+    }
+
+    public SpatialIndexKind getSpatialIndexKind()
+    {
+        return m_indexKind;
+    }
+
+    /**
+     * Индекс, построенный на последнем тике, или null. Индексов два: пока
+     * читатели работают с этим, поток модели перестраивает второй, поэтому
+     * ссылку стоит брать заново на каждый запрос.
+     */
+    public SpatialIndex getSpatialIndex()
+    {
+        return m_index;
+    }
+
+    public int addRobot(double x, double y, double direction)
+    {
+        return m_robots.add(x, y, direction, Kinematics.maxVelocity);
+    }
+
+    public RobotStore getRobots()
+    {
+        return m_robots;
+    }
+
+    public void setTarget(double x, double y)
+    {
+        m_targetX = x;
+        m_targetY = y;
+        PathFollower pathFollower = m_pathFollower;
+        FlowFieldFollower flowFieldFollower = m_flowFieldFollower;
+        if (pathFollower != null)
+        {
+            pathFollower.setGoal(x, y);
+        }
+        if (flowFieldFollower != null)
+        {
+            flowFieldFollower.setGoal(x, y);
+        }
+        if (pathFollower == null && flowFieldFollower == null)
+        {
+            m_robots.setAllTargets(x, y);
+        }
+    }
+
+    /**
+     * Включает обход препятствий: роботы идут к цели по путям, которые
+     * service ищет в своём потоке. null возвращает прямую наводку на цель.
+     */
+    public void setPathService(PathService service)
+    {
+        m_pathFollower = service == null ? null : new PathFollower(service, m_targetX, m_targetY);
+        if (service == null && m_flowFieldFollower == null)
+        {
+            m_robots.setAllTargets(m_targetX, m_targetY);
+        }
+    }
+
+    /**
+     * Включает навигацию по общему полю направлений. Если задан и
+     * PathService, поле используется, когда роботов не меньше
+     * flowFieldMinRobots: при общей цели одно поле дешевле поиска пути
+     * для каждого.
+     */
+    public void setFlowFieldGenerator(FlowFieldGenerator generator)
+    {
+        m_flowFieldFollower = generator == null ? null
+            : new FlowFieldFollower(generator, m_targetX, m_targetY);
+        if (generator == null && m_pathFollower == null)
+        {
+            m_robots.setAllTargets(m_targetX, m_targetY);
+        }
+    }
+
+    /**
+     * Сколько роботов сдвинулось на последнем тике. Ноль означает, что все
+     * стоят в своих целях и перерисовывать нечего.
+     */
+    public int getMovedOnLastTick()
+    {
+        return m_movedOnLastTick;
+    }
+
+    /**
+     * Продвигает всех роботов на duration единиц времени.
+     * @return количество роботов, которые сдвинулись
+     */
+    public int tick(double duration)
+    {
+        double width = m_world.getWidth();
+        double height = m_world.getHeight();
+        FlowFieldFollower flowFieldFollower = m_flowFieldFollower;
+        PathFollower pathFollower = m_pathFollower;
+        if (flowFieldFollower != null && (pathFollower == null || m_robots.size() >= flowFieldMinRobots))
+        {
+            flowFieldFollower.update(m_robots);
+        }
+        else if (pathFollower != null)
+        {
+            pathFollower.update(m_robots);
+        }
+        int moved;
+        if (m_tickMode == TickMode.Parallel)
+        {
+            moved = m_parallelStepper.step(m_robots, width, height, duration);
+        }
+        else
+        {
+            moved = Kinematics.step(m_robots, 0, m_robots.size(), width, height, duration);
+        }
+        if (m_collisionsEnabled)
+        {
+            m_contactsOnLastTick = m_collisions.resolve(m_robots, width, height, duration);
+            // касание само по себе не движение: замершая толпа у цели
+            // касается соседей, но перерисовывать её не нужно
+            moved = Math.max(moved, m_collisions.getDisplacedOnLastResolve());
+        }
+        else
+        {
+            m_contactsOnLastTick = 0;
+        }
+        m_movedOnLastTick = moved;
+        updateSpatialIndex(moved, width, height);
+        m_robots.publish();
+        return moved;
+    }
+
+    private void updateSpatialIndex(int moved, double width, double height)
+    {
+        SpatialIndexKind kind = m_indexKind;
+        if (kind != m_builtIndexKind)
+        {
+            m_builtIndexKind = kind;
+            m_backIndex = kind == null ? null : createIndex(kind);
+            m_index = kind == null ? null : createIndex(kind);
+            if (m_index != null)
+            {
+                m_index.rebuild(m_robots, width, height);
+            }
+            return;
+        }
+        SpatialIndex current = m_index;
+        if (current == null || moved == 0 && current.size() == m_robots.size()
+            && current.m_width == width && current.m_height == height)
+        {
+            return;
+        }
+        SpatialIndex next = m_backIndex;
+        next.rebuild(m_robots, width, height);
+        m_backIndex = current;
+        m_index = next;
+    }
+
+    private static SpatialIndex createIndex(SpatialIndexKind kind)
+    {
+        switch (kind)
+        {
+            case QuadTree:
+                return new QuadTreeIndex();
+            case Grid:
+            default:
+                return new GridIndex();
+        }
+    }
+}
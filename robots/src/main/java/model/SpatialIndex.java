@@ -0,0 +1,355 @@
+package model;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Пространственный индекс по положениям роботов. Индекс хранит собственный
+ * снимок координат, сделанный в rebuild(), поэтому запросы не видят
+ * полусдвинутых роботов. Поле считается тором, как и в Kinematics.step:
+ * расстояния, прямоугольники и лучи переходят через края.
+ *
+ * Наследники реализуют только построение и обход плоского прямоугольника
+ * внутри [0, width] x [0, height]; склейка краёв, круг, k ближайших и луч
+ * сделаны здесь поверх этого обхода.
+ *
+ * Перестройка и запросы синхронизированы на индексе. Фильтры запросов по
+ * кругу - заранее созданные обработчики над полями запроса, так что сам
+ * запрос ничего не выделяет; visitor вызывающего тоже стоит держать в поле.
+ */
+public abstract class SpatialIndex
+{
+    private static final double defaultRayStep = 32;
+
+    double[] m_x = new double[0];
+    double[] m_y = new double[0];
+    int m_size;
+    double m_width;
+    double m_height;
+
+    private double[] m_nearestDistances = new double[0];
+    private int[] m_nearestResult;
+    private int m_nearestCount;
+    private int m_nearestLimit;
+    private double m_queryX;
+    private double m_queryY;
+    private double m_queryRadius2;
+    private IntConsumer m_rangeVisitor;
+    private final IntConsumer m_rangeFilter = this::filterRange;
+    private final IntConsumer m_nearestFilter = this::filterNearest;
+
+    private double m_rayX;
+    private double m_rayY;
+    private double m_rayDirX;
+    private double m_rayDirY;
+    private double m_rayMidX;
+    private double m_rayMidY;
+    private double m_rayRadius;
+    private int m_rayIgnore;
+    private double m_rayBestT;
+    private int m_rayBestIndex;
+    private final IntConsumer m_rayCollector = this::collectRayHit;
+
+    /**
+     * Снимает положения всех роботов хранилища и перестраивает индекс.
+     */
+    public final synchronized void rebuild(RobotStore store, double width, double height)
+    {
+        int size = store.size();
+        double[] positionX = store.positionsX();
+        double[] positionY = store.positionsY();
+        if (m_x.length < size)
+        {
+            m_x = new double[size];
+            m_y = new double[size];
+        }
+        for (int i = 0; i < size; ++i)
+        {
+            m_x[i] = wrap(positionX[i], width);
+            m_y[i] = wrap(positionY[i], height);
+        }
+        m_size = size;
+        m_width = width;
+        m_height = height;
+        build();
+    }
+
+    private static double wrap(double value, double period)
+    {
+        if (value >= 0 && value < period)
+        {
+            return value;
+        }
+        value = Kinematics.applyMod(value, period);
+        return value >= period ? 0 : value;
+    }
+
+    abstract void build();
+
+    /**
+     * Передаёт visitor номера роботов внутри прямоугольника без учёта тора.
+     * Границы уже лежат в [0, width] x [0, height].
+     */
+    abstract void visitRect(double minX, double minY, double maxX, double maxY, IntConsumer visitor);
+
+    /**
+     * Шаг, с которым луч разбивается на отрезки для запросов по прямоугольникам.
+     */
+    double rayStep()
+    {
+        return defaultRayStep;
+    }
+
+    public synchronized int size()
+    {
+        return m_size;
+    }
+
+    public synchronized double getX(int robot)
+    {
+        return m_x[robot];
+    }
+
+    public synchronized double getY(int robot)
+    {
+        return m_y[robot];
+    }
+
+    /**
+     * Квадрат расстояния на торе.
+     */
+    public synchronized double distanceSquared(double x1, double y1, double x2, double y2)
+    {
+        return torusDistanceSquared(x1, y1, x2, y2);
+    }
+
+    private double torusDistanceSquared(double x1, double y1, double x2, double y2)
+    {
+        double dx = torusDelta(x1 - x2, m_width);
+        double dy = torusDelta(y1 - y2, m_height);
+        return dx * dx + dy * dy;
+    }
+
+    private static double torusDelta(double delta, double period)
+    {
+        if (period <= 0)
+        {
+            return delta;
+        }
+        delta = Math.abs(delta) % period;
+        return delta > period / 2 ? period - delta : delta;
+    }
+
+    /**
+     * Все роботы в прямоугольнике; прямоугольник может выходить за края поля
+     * и тогда продолжается с противоположной стороны. Каждый робот
+     * передаётся не больше одного раза.
+     */
+    public synchronized void queryRect(double minX, double minY, double maxX, double maxY, IntConsumer visitor)
+    {
+        if (maxX < minX || maxY < minY || m_size == 0)
+        {
+            return;
+        }
+        double spanX = maxX - minX;
+        double spanY = maxY - minY;
+        boolean allX = spanX >= m_width;
+        boolean allY = spanY >= m_height;
+        double x0 = allX ? 0 : wrap(minX, m_width);
+        double y0 = allY ? 0 : wrap(minY, m_height);
+        double x1 = allX ? m_width : x0 + spanX;
+        double y1 = allY ? m_height : y0 + spanY;
+        visitRows(x0, Math.min(x1, m_width), y0, y1, visitor);
+        if (x1 > m_width)
+        {
+            visitRows(0, x1 - m_width, y0, y1, visitor);
+        }
+    }
+
+    private void visitRows(double x0, double x1, double y0, double y1, IntConsumer visitor)
+    {
+        visitRect(x0, y0, x1, Math.min(y1, m_height), visitor);
+        if (y1 > m_height)
+        {
+            visitRect(x0, 0, x1, y1 - m_height, visitor);
+        }
+    }
+
+    /**
+     * Все роботы на расстоянии не больше radius от (x, y) по тору.
+     */
+    public synchronized void queryRange(double x, double y, double radius, IntConsumer visitor)
+    {
+        m_queryX = x;
+        m_queryY = y;
+        m_queryRadius2 = radius * radius;
+        m_rangeVisitor = visitor;
+        try
+        {
+            queryRect(x - radius, y - radius, x + radius, y + radius, m_rangeFilter);
+        }
+        finally
+        {
+            m_rangeVisitor = null;
+        }
+    }
+
+    private void filterRange(int robot)
+    {
+        if (torusDistanceSquared(m_queryX, m_queryY, m_x[robot], m_y[robot]) <= m_queryRadius2)
+        {
+            m_rangeVisitor.accept(robot);
+        }
+    }
+
+    /**
+     * До k ближайших к (x, y) роботов по тору в порядке возрастания
+     * расстояния. Радиус поиска удваивается, пока в круг не попадёт k роботов.
+     * @return сколько номеров записано в result
+     */
+    public synchronized int nearest(double x, double y, int k, int[] result)
+    {
+        int limit = Math.min(k, Math.min(result.length, m_size));
+        if (limit <= 0)
+        {
+            return 0;
+        }
+        if (m_nearestDistances.length < limit)
+        {
+            m_nearestDistances = new double[limit];
+        }
+        m_nearestResult = result;
+        m_nearestLimit = limit;
+        m_queryX = x;
+        m_queryY = y;
+        double maxRadius = 0.5 * Math.hypot(m_width, m_height);
+        double radius = Math.max(1, Math.sqrt(limit * m_width * m_height / (Math.PI * m_size)));
+        while (true)
+        {
+            m_nearestCount = 0;
+            double searchRadius = Math.min(radius, maxRadius);
+            m_queryRadius2 = searchRadius * searchRadius;
+            queryRect(x - searchRadius, y - searchRadius, x + searchRadius, y + searchRadius, m_nearestFilter);
+            if (m_nearestCount >= limit || radius >= maxRadius)
+            {
+                break;
+            }
+            radius *= 2;
+        }
+        m_nearestResult = null;
+        return m_nearestCount;
+    }
+
+    private void filterNearest(int robot)
+    {
+        double distance = torusDistanceSquared(m_queryX, m_queryY, m_x[robot], m_y[robot]);
+        if (distance > m_queryRadius2)
+        {
+            return;
+        }
+        int position = m_nearestCount;
+        if (position == m_nearestLimit)
+        {
+            if (distance >= m_nearestDistances[position - 1])
+            {
+                return;
+            }
+            position--;
+        }
+        else
+        {
+            m_nearestCount++;
+        }
+        while (position > 0 && m_nearestDistances[position - 1] > distance)
+        {
+            m_nearestDistances[position] = m_nearestDistances[position - 1];
+            m_nearestResult[position] = m_nearestResult[position - 1];
+            position--;
+        }
+        m_nearestDistances[position] = distance;
+        m_nearestResult[position] = robot;
+    }
+
+    /**
+     * Первый робот (круг радиуса radius вокруг него), которого пересекает луч
+     * из (x, y) в направлении (dirX, dirY) на длине maxDistance. Луч,
+     * вышедший за край поля, продолжается с противоположного края.
+     * @param ignore номер робота, которого не учитывать (например, того, кто
+     *               смотрит), или -1
+     * @return номер робота или -1
+     */
+    public synchronized int raycast(double x, double y, double dirX, double dirY,
+        double maxDistance, double radius, int ignore)
+    {
+        double length = Math.hypot(dirX, dirY);
+        if (length == 0 || m_size == 0)
+        {
+            return -1;
+        }
+        m_rayX = x;
+        m_rayY = y;
+        m_rayDirX = dirX / length;
+        m_rayDirY = dirY / length;
+        m_rayRadius = radius;
+        m_rayIgnore = ignore;
+        m_rayBestT = Double.POSITIVE_INFINITY;
+        m_rayBestIndex = -1;
+        double step = rayStep();
+        for (double start = 0; start < maxDistance; start += step)
+        {
+            double end = Math.min(start + step, maxDistance);
+            double ax = x + m_rayDirX * start;
+            double ay = y + m_rayDirY * start;
+            double bx = x + m_rayDirX * end;
+            double by = y + m_rayDirY * end;
+            m_rayMidX = (ax + bx) / 2;
+            m_rayMidY = (ay + by) / 2;
+            queryRect(Math.min(ax, bx) - radius, Math.min(ay, by) - radius,
+                Math.max(ax, bx) + radius, Math.max(ay, by) + radius, m_rayCollector);
+            if (m_rayBestT <= end)
+            {
+                break;
+            }
+        }
+        return m_rayBestT <= maxDistance ? m_rayBestIndex : -1;
+    }
+
+    private void collectRayHit(int robot)
+    {
+        if (robot == m_rayIgnore)
+        {
+            return;
+        }
+        // копия робота на развёрнутой плоскости, ближайшая к текущему отрезку луча
+        double centerX = m_x[robot] + nearestPeriod(m_rayMidX - m_x[robot], m_width);
+        double centerY = m_y[robot] + nearestPeriod(m_rayMidY - m_y[robot], m_height);
+        double offsetX = centerX - m_rayX;
+        double offsetY = centerY - m_rayY;
+        double along = offsetX * m_rayDirX + offsetY * m_rayDirY;
+        double across2 = offsetX * offsetX + offsetY * offsetY - along * along;
+        double radius2 = m_rayRadius * m_rayRadius;
+        if (across2 > radius2)
+        {
+            return;
+        }
+        double halfChord = Math.sqrt(radius2 - across2);
+        double t = along - halfChord;
+        if (t < 0)
+        {
+            if (along + halfChord < 0)
+            {
+                return;
+            }
+            t = 0;
+        }
+        if (t < m_rayBestT)
+        {
+            m_rayBestT = t;
+            m_rayBestIndex = robot;
+        }
+    }
+
+    private static double nearestPeriod(double delta, double period)
+    {
+        return period <= 0 ? 0 : Math.rint(delta / period) * period;
+    }
+}
@@ -0,0 +1,33 @@
+package model;
+
+/**
+ * Границы игрового поля. Поле замкнуто (тор): робот, вышедший за край,
+ * появляется с противоположной стороны.
+ */
+public class World
+{
+    private volatile double m_width;
+    private volatile double m_height;
+
+    public World(double width, double height)
+    {
+        m_width = width;
+        m_height = height;
+    }
+
+    public double getWidth()
+    {
+        return m_width;
+    }
+
+    public double getHeight()
+    {
+        return m_height;
+    }
+
+    public void setSize(double width, double height)
+    {
+        m_width = width;
+        m_height = height;
+    }
+}
@@ -0,0 +1,148 @@
+package render;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Заранее нарисованные спрайты робота для набора квантованных направлений.
+ * Вместо поворота Graphics и четырёх овалов на каждого робота рисуется
+ * одна готовая картинка.
+ *
+ * Картинка для направления рисуется при первом обращении и дальше
+ * хранится всё время: даже при defaultBuckets это 64 спрайта по 32x32,
+ * так что вытеснять нечего. Попадание в кэш ничего не выделяет.
+ */
+public class RobotSpriteCache
+{
+    public static final int spriteSize = 32;
+    public static final int spriteCenter = spriteSize / 2;
+
+    public static final int defaultBuckets = 64;
+
+    private final int m_buckets;
+    private final GraphicsConfiguration m_configuration;
+    private final BufferedImage[] m_sprites;
+    private int m_spriteCount;
+
+    public RobotSpriteCache()
+    {
+        this(defaultBuckets);
+    }
+
+    public RobotSpriteCache(int buckets)
+    {
+        this(buckets, defaultConfiguration());
+    }
+
+    public RobotSpriteCache(int buckets, GraphicsConfiguration configuration)
+    {
+        if (buckets <= 0)
+        {
+            throw new IllegalArgumentException("buckets must be positive: " + buckets);
+        }
+        m_buckets = buckets;
+        m_configuration = configuration;
+        m_sprites = new BufferedImage[buckets];
+    }
+
+    public int getBuckets()
+    {
+        return m_buckets;
+    }
+
+    public int bucketOf(double direction)
+    {
+        int bucket = (int)Math.round(direction / (2 * Math.PI) * m_buckets) % m_buckets;
+        return bucket < 0 ? bucket + m_buckets : bucket;
+    }
+
+    public int getSpriteCount()
+    {
+        return m_spriteCount;
+    }
+
+    public synchronized BufferedImage getSprite(double direction)
+    {
+        int bucket = bucketOf(direction);
+        BufferedImage sprite = m_sprites[bucket];
+        if (sprite == null)
+        {
+            sprite = createSprite(bucket * 2 * Math.PI / m_buckets);
+            m_sprites[bucket] = sprite;
+            m_spriteCount++;
+        }
+        return sprite;
+    }
+
+    /**
+     * Рисует робота с центром в (centerX, centerY).
+     */
+    public void drawRobot(Graphics g, int centerX, int centerY, double direction)
+    {
+        g.drawImage(getSprite(direction), centerX - spriteCenter, centerY - spriteCenter, null);
+    }
+
+    private BufferedImage createSprite(double direction)
+    {
+        BufferedImage sprite;
+        if (m_configuration != null)
+        {
+            sprite = m_configuration.createCompatibleImage(spriteSize, spriteSize, Transparency.BITMASK);
+        }
+        else
+        {
+            sprite = new BufferedImage(spriteSize, spriteSize, BufferedImage.TYPE_INT_ARGB);
+        }
+        Graphics2D g = sprite.createGraphics();
+        try
+        {
+            g.rotate(direction, spriteCenter, spriteCenter);
+            paintRobot(g, spriteCenter, spriteCenter);
+        }
+        finally
+        {
+            g.dispose();
+        }
+        return sprite;
+    }
+
+    /**
+     * Тело робота как в GameVisualizer.drawRobot: овал 30x10 и белый "глаз".
+     */
+    public static void paintRobot(Graphics g, int centerX, int centerY)
+    {
+        g.setColor(Color.MAGENTA);
+        fillOval(g, centerX, centerY, 30, 10);
+        g.setColor(Color.BLACK);
+        drawOval(g, centerX, centerY, 30, 10);
+        g.setColor(Color.WHITE);
+        fillOval(g, centerX  + 10, centerY, 5, 5);
+        g.setColor(Color.BLACK);
+        drawOval(g, centerX  + 10, centerY, 5, 5);
+    }
+
+    private static void fillOval(Graphics g, int centerX, int centerY, int diam1, int diam2)
+    {
+        g.fillOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    }
+
+    private static void drawOval(Graphics g, int centerX, int centerY, int diam1, int diam2)
+    {
+        g.drawOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    }
+
+    private static GraphicsConfiguration defaultConfiguration()
+    {
+        if (GraphicsEnvironment.isHeadless())
+        {
+            return null;
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment()
+            .getDefaultScreenDevice().getDefaultConfiguration();
+    }
+}